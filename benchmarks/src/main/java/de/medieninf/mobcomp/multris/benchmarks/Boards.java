@@ -0,0 +1,59 @@
+package de.medieninf.mobcomp.multris.benchmarks;
+
+import java.util.Random;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.data.Wall;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Walls as they look in the middle of a game, the same for every run of a seed: a stack of STACK_HEIGHT rows
+ *         with one hole each, so no row is full, and a ragged row on top of it.
+ * */
+public final class Boards {
+
+	public static final int STACK_HEIGHT = 8;
+
+	private Boards() {
+	}
+
+	/**
+	 * @param seed
+	 *            seed of the holes and bitmap ids
+	 * @return Wall in the middle of a game
+	 * */
+	public static Wall midgame(long seed) {
+		return withFullRows(0, seed);
+	}
+
+	/**
+	 * Builds a midgame Wall whose lowest rows are completely occupied, so checkRows() deletes them
+	 * 
+	 * @param fullRows
+	 *            number of full rows at the bottom, 0...STACK_HEIGHT
+	 * @param seed
+	 *            seed of the holes and bitmap ids
+	 * @return Wall
+	 * */
+	public static Wall withFullRows(int fullRows, long seed) {
+		Random random = new Random(seed);
+		Wall wall = new Wall();
+		int top = GameState.ROWS - STACK_HEIGHT;
+		for (int row = top; row < GameState.ROWS; row++) {
+			boolean full = row >= GameState.ROWS - fullRows;
+			int hole = full ? -1 : random.nextInt(GameState.COLS);
+			for (int col = 0; col < GameState.COLS; col++) {
+				if (col != hole) {
+					wall.setBrick(row, col, 1 + random.nextInt(7));
+				}
+			}
+		}
+		for (int col = 0; col < GameState.COLS; col++) { // ragged surface
+			if (random.nextBoolean()) {
+				wall.setBrick(top - 1, col, 1 + random.nextInt(7));
+			}
+		}
+		return wall;
+	}
+}
@@ -0,0 +1,74 @@
+package de.medieninf.mobcomp.multris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.ShapeGenerator;
+import de.medieninf.mobcomp.multris.game.enums.GeneratorMode;
+import de.medieninf.mobcomp.multris.game.simulation.RandomInputSource;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Benchmark of a whole tick, with random input like the Simulator. The games are played on: a tick measures
+ *         falling, moving, docking and deleting rows in the mix a real game has. A new game is started when one is
+ *         over, which is rare enough not to matter.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+	private static final long SEED = 42;
+
+	@State(Scope.Thread)
+	public static class Game {
+		/** singleplayer: serverTick(), lockstep: lockstepTick() of a single player, which needs no network */
+		@Param({ "singleplayer", "lockstep" })
+		String mode;
+		GameState gameState;
+		RandomInputSource inputSource;
+		int tick;
+		int games;
+
+		@Setup
+		public void setUp() {
+			inputSource = new RandomInputSource(SEED);
+			newGame();
+		}
+
+		void newGame() {
+			long seed = SEED + games++;
+			if (mode.equals("lockstep")) {
+				gameState = new GameState(0, 1, seed);
+			} else {
+				gameState = new GameState(true, false, 0, 1, new ShapeGenerator(seed, GeneratorMode.BAG));
+			}
+			tick = 0;
+		}
+	}
+
+	@Benchmark
+	public GameState tick(Game game) {
+		if (game.gameState.getGameOver()) {
+			game.newGame();
+		}
+		game.inputSource.registerInput(game.gameState, game.tick++);
+		game.gameState.tick();
+		return game.gameState;
+	}
+}
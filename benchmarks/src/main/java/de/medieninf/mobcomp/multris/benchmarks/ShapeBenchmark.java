@@ -0,0 +1,75 @@
+package de.medieninf.mobcomp.multris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.medieninf.mobcomp.multris.game.data.Shape;
+import de.medieninf.mobcomp.multris.game.enums.Motion;
+import de.medieninf.mobcomp.multris.game.enums.ShapeType;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Benchmarks of the Shapes: the check against the Shapes of the other players, done for every move in
+ *         multiplayer games, and drawing a random ShapeType.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeBenchmark {
+
+	/**
+	 * A Shape and 1 to 7 other Shapes spread over the field, some of them close to it, one per other player
+	 * */
+	@State(Scope.Thread)
+	public static class Players {
+		@Param({ "1", "2", "3", "4", "5", "6", "7" })
+		int others;
+		Shape shape;
+		Shape[] otherShapes;
+
+		@Setup
+		public void setUp() {
+			ShapeType[] types = ShapeType.values();
+			shape = new Shape(4, 6, ShapeType.T_SHAPE);
+			otherShapes = new Shape[others];
+			for (int i = 0; i < others; i++) {
+				otherShapes[i] = new Shape((i * 3) % 8, 3 + i * 2, types[(i + 1) % types.length]);
+			}
+		}
+	}
+
+	/**
+	 * Like GameState.isShapeColliding(): checks the Shape against the other Shapes. Goes on after a collision, so the
+	 * time grows with the number of players whatever the positions are.
+	 * */
+	@Benchmark
+	public int collidesWith(Players players) {
+		Shape shape = players.shape;
+		int collisions = 0;
+		for (Shape other : players.otherShapes) {
+			if (shape.collidesWith(other, Motion.DOWN)) {
+				collisions++;
+			}
+		}
+		return collisions;
+	}
+
+	@Benchmark
+	public ShapeType getRandom() {
+		return ShapeType.getRandom();
+	}
+}
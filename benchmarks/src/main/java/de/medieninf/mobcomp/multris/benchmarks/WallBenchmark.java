@@ -0,0 +1,119 @@
+package de.medieninf.mobcomp.multris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.data.Shape;
+import de.medieninf.mobcomp.multris.game.data.Wall;
+import de.medieninf.mobcomp.multris.game.enums.Motion;
+import de.medieninf.mobcomp.multris.game.enums.ShapeType;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Benchmarks of the Wall: docking a Shape, deleting full rows and the collision check done for every move.
+ * 
+ *         Docking and deleting rows change the Wall, so every call needs a Wall of its own. These two run as batches:
+ *         BATCH Walls are built before an iteration and every call uses up the next one. The score is the time of a
+ *         whole batch, divide it by BATCH for a single call.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WallBenchmark {
+
+	private static final long SEED = 42;
+	static final int BATCH = 50000; // calls per iteration of the batched benchmarks, about 15 ms
+
+	/**
+	 * Midgame Walls with a T resting on top of the stack, one per call of a batch
+	 * */
+	@State(Scope.Thread)
+	public static class Docking {
+		Wall[] walls = new Wall[BATCH];
+		int next;
+		Shape shape;
+
+		@Setup(Level.Iteration)
+		public void setUp() {
+			for (int i = 0; i < BATCH; i++) {
+				walls[i] = Boards.midgame(SEED);
+			}
+			next = 0;
+			int posY = GameState.ROWS - Boards.STACK_HEIGHT - 1 - 2 - 1; // above the ragged row
+			shape = new Shape(4, posY, ShapeType.T_SHAPE);
+		}
+	}
+
+	/**
+	 * Walls with 1 to 4 full rows, one per call of a batch. checkRows() deletes them
+	 * */
+	@State(Scope.Thread)
+	public static class Clearing {
+		@Param({ "1", "2", "3", "4" })
+		int lines;
+		Wall[] walls = new Wall[BATCH];
+		int next;
+
+		@Setup(Level.Iteration)
+		public void setUp() {
+			for (int i = 0; i < BATCH; i++) {
+				walls[i] = Boards.withFullRows(lines, SEED);
+			}
+			next = 0;
+		}
+	}
+
+	/**
+	 * A falling Shape close above a midgame stack, checked for every Motion
+	 * */
+	@State(Scope.Thread)
+	public static class Moving {
+		@Param
+		Motion motion;
+		Wall wall;
+		Shape shape;
+
+		@Setup
+		public void setUp() {
+			wall = Boards.midgame(SEED);
+			shape = new Shape(3, GameState.ROWS - Boards.STACK_HEIGHT - 4, ShapeType.L_SHAPE);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 5, batchSize = BATCH)
+	@Measurement(iterations = 10, batchSize = BATCH)
+	public boolean putShapeIntoWall(Docking docking) {
+		return docking.walls[docking.next++].putShapeIntoWall(docking.shape);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 5, batchSize = BATCH)
+	@Measurement(iterations = 10, batchSize = BATCH)
+	public int checkRows(Clearing clearing) {
+		return clearing.walls[clearing.next++].checkRows();
+	}
+
+	@Benchmark
+	public boolean collidesWith(Moving moving) {
+		return moving.wall.collidesWith(moving.shape, moving.motion);
+	}
+}
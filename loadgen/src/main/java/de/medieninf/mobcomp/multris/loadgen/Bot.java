@@ -0,0 +1,166 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Random;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.lockstep.InputBatch;
+import de.medieninf.mobcomp.multris.network.BTMessage;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         A player without a user. Drives a lockstep GameState with scripted inputs, hands the messages it has to send
+ *         to an Outbox and takes the received messages like the GameService does. A new round starts with every
+ *         START_GAME, so the load goes on after a game is over.
+ * */
+public class Bot implements Observer {
+
+	/**
+	 * Where a Bot puts the messages for the other players
+	 * */
+	public interface Outbox {
+		void send(BTMessage btmsg);
+	}
+
+	private final String id;
+	private final Random script;
+	private final Outbox outbox;
+	private final SendClock sendClock;
+	private final LatencyRecorder latencies = new LatencyRecorder();
+
+	private volatile GameState gameState; // replaced by the receiving thread when a round starts
+	private volatile int playerNo;
+	private boolean gameOverSent;
+	private int rounds;
+	private volatile long inputsReceived; // only written by the receiving thread
+
+	/**
+	 * Constructor
+	 * 
+	 * @param id
+	 *            address of the Bot, used as pID
+	 * @param scriptSeed
+	 *            seed of the scripted inputs
+	 * @param outbox
+	 *            takes the messages to send
+	 * @param sendClock
+	 *            shared by all Bots to measure the latency of the inputs
+	 * */
+	public Bot(String id, long scriptSeed, Outbox outbox, SendClock sendClock) {
+		this.id = id;
+		this.script = new Random(scriptSeed);
+		this.outbox = outbox;
+		this.sendClock = sendClock;
+	}
+
+	/**
+	 * Starts a new game with a fresh GameState
+	 * 
+	 * @param playerNo
+	 *            number of the player in this round
+	 * @param playerCount
+	 *            number of players
+	 * @param seed
+	 *            seed shared by all players of the round
+	 * */
+	public synchronized void startRound(int playerNo, int playerCount, long seed) {
+		this.playerNo = playerNo;
+		GameState next = new GameState(playerNo, playerCount, seed);
+		next.setMyId(id);
+		next.addObserver(this);
+		gameOverSent = false;
+		rounds++;
+		gameState = next;
+	}
+
+	/**
+	 * Does one tick: registers the scripted inputs and lets the GameState progress. Reports the end of the game once
+	 * */
+	public synchronized void tick() {
+		GameState current = gameState;
+		if (current == null) {
+			return;
+		}
+		switch (script.nextInt(12)) { // mostly nothing, like a real player
+		case 0:
+			current.registerMoveLeft();
+			break;
+		case 1:
+			current.registerMoveRight();
+			break;
+		case 2:
+			current.registerRotate();
+			break;
+		case 3:
+			current.registerSpeedUp();
+			break;
+		case 4:
+			current.registerSlowDown();
+			break;
+		}
+		current.tick();
+		if (current.getGameOver() && !gameOverSent) {
+			gameOverSent = true;
+			outbox.send(new BTMessage(BTMessage.GAME_OVER, id, true));
+		}
+	}
+
+	/**
+	 * Takes a received message. Called by the receiving thread
+	 * 
+	 * @param btmsg
+	 *            decoded message
+	 * */
+	public void receive(BTMessage btmsg) {
+		switch (btmsg.getmID()) {
+		case BTMessage.START_GAME:
+			Integer[] start = (Integer[]) btmsg.getData();
+			startRound(start[0], start[1], start[3]);
+			break;
+		case BTMessage.INPUT:
+			InputBatch batch = (InputBatch) btmsg.getData();
+			long elapsed = sendClock.elapsed(batch.getPlayerNo(), batch.getFirstTick());
+			if (elapsed >= 0) {
+				latencies.record(elapsed);
+			}
+			inputsReceived++;
+			gameState.setIncomingData(btmsg);
+			break;
+		case BTMessage.GAME_OVER:
+			gameState.setIncomingData(btmsg);
+			break;
+		default:
+			break; // nothing else is sent in lockstep mode
+		}
+	}
+
+	public void update(Observable observable, Object data) {
+		if (observable == gameState && data instanceof InputBatch) {
+			InputBatch batch = (InputBatch) data;
+			sendClock.sent(playerNo, batch.getFirstTick());
+			outbox.send(new BTMessage(BTMessage.INPUT, id, batch));
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public int getPlayerNo() {
+		return playerNo;
+	}
+
+	public synchronized int getRounds() {
+		return rounds;
+	}
+
+	public long getInputsReceived() {
+		return inputsReceived;
+	}
+
+	public LatencyRecorder getLatencies() {
+		return latencies;
+	}
+}
@@ -0,0 +1,124 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.medieninf.mobcomp.multris.network.BTMessage;
+import de.medieninf.mobcomp.multris.network.FrameReader;
+import de.medieninf.mobcomp.multris.network.converters.MessageConverter;
+import de.medieninf.mobcomp.multris.network.transport.Transport;
+import de.medieninf.mobcomp.multris.network.transport.TransportConnection;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         A client device with a Bot. One thread reads and decodes the frames from the host, a second one ticks the
+ *         Bot and writes its messages right away. Clients are not what is measured, so they do without queues.
+ * */
+public class BotClient implements Bot.Outbox {
+
+	private final TransportConnection connection;
+	private final Bot bot;
+	private final Ticker ticker;
+	private final MessageConverter messageConverter = new MessageConverter(); // only used by the ticker
+	private OutputStream outStream;
+	private Thread readerThread;
+	private volatile boolean running;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param transport
+	 *            transport of this client
+	 * @param hostAddress
+	 *            address of the host
+	 * @param scriptSeed
+	 *            seed of the scripted inputs of the Bot
+	 * @param ticksPerSecond
+	 *            ticks of the Bot per second
+	 * @param sendClock
+	 *            shared clock of all Bots
+	 * */
+	public BotClient(Transport transport, String hostAddress, long scriptSeed, int ticksPerSecond, SendClock sendClock)
+			throws IOException {
+		connection = transport.open(hostAddress);
+		bot = new Bot(transport.getLocalAddress(), scriptSeed, this, sendClock);
+		ticker = new Ticker(bot, ticksPerSecond, "BotTicker-" + bot.getId());
+	}
+
+	/**
+	 * Connects to the host and starts reading. The Bot starts ticking, its GameState is created with the first
+	 * START_GAME
+	 * */
+	public void start() throws IOException {
+		connection.connect();
+		outStream = connection.getOutputStream();
+		final FrameReader frameReader = new FrameReader(connection.getInputStream(), FrameReader.DEFAULT_MAX_FRAME_SIZE);
+		running = true;
+		readerThread = new Thread("BotReader-" + bot.getId()) {
+			@Override
+			public void run() {
+				MessageConverter decoder = new MessageConverter();
+				final int SIZE_IN_BYTES = MessageConverter.LENGTH_FIELD_SIZE;
+				try {
+					while (frameReader.next()) {
+						int offset = frameReader.getFrameOffset();
+						int length = frameReader.getFrameLength();
+						bot.receive(decoder.decode(frameReader.getBuffer(), offset + SIZE_IN_BYTES, length - SIZE_IN_BYTES));
+					}
+				} catch (IOException e) {
+					if (running) {
+						throw new RuntimeException("Client " + bot.getId() + " lost the host", e);
+					}
+				}
+			}
+		};
+		readerThread.start();
+		ticker.start();
+	}
+
+	/**
+	 * Writes a message of the Bot. Called by the ticker, so a broken connection is reported once and ends the sending
+	 * instead of the thread
+	 * */
+	public void send(BTMessage btmsg) {
+		if (!running) {
+			return;
+		}
+		int length = messageConverter.encode(btmsg);
+		try {
+			outStream.write(messageConverter.getBuffer(), 0, length);
+		} catch (IOException e) {
+			if (running) {
+				running = false;
+				System.err.println("Client " + bot.getId() + " can not write: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Stops ticking, the connection stays open. All clients have to stop ticking before the first connection is
+	 * closed, the host ends the session when a client leaves
+	 * */
+	public void stopTicking() throws InterruptedException {
+		running = false;
+		ticker.cancel();
+	}
+
+	/**
+	 * Stops ticking and closes the connection
+	 * */
+	public void stop() throws InterruptedException {
+		stopTicking();
+		try {
+			connection.close();
+		} catch (IOException e) {
+
+		}
+		readerThread.join();
+	}
+
+	public Bot getBot() {
+		return bot;
+	}
+}
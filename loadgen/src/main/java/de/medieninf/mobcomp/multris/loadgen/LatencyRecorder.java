@@ -0,0 +1,76 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+import java.util.Arrays;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Collects latency samples in nanoseconds and calculates percentiles of them. Every sample is kept, a run
+ *         produces no more than a few hundred thousand.
+ * */
+public class LatencyRecorder {
+
+	private long[] samples = new long[1024];
+	private int count;
+
+	/**
+	 * Adds a sample
+	 * 
+	 * @param nanos
+	 *            latency in nanoseconds
+	 * */
+	public synchronized void record(long nanos) {
+		if (count == samples.length) {
+			samples = Arrays.copyOf(samples, count * 2);
+		}
+		samples[count++] = nanos;
+	}
+
+	/**
+	 * Adds all samples of another recorder
+	 * 
+	 * @param other
+	 *            recorder to take the samples from
+	 * */
+	public void addAll(LatencyRecorder other) {
+		for (long nanos : other.sorted()) {
+			record(nanos);
+		}
+	}
+
+	/**
+	 * Throws all samples away, e.g. after warming up
+	 * */
+	public synchronized void clear() {
+		count = 0;
+	}
+
+	/**
+	 * @return number of samples
+	 * */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Calculates a percentile with the nearest rank method
+	 * 
+	 * @param percent
+	 *            percentile, 0...100
+	 * @return latency in nanoseconds, 0 without samples
+	 * */
+	public long percentile(double percent) {
+		long[] sorted = sorted();
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percent / 100 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+
+	private synchronized long[] sorted() {
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
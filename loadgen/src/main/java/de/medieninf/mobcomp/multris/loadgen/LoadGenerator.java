@@ -0,0 +1,168 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.network.transport.LoopbackTransport;
+import de.medieninf.mobcomp.multris.network.transport.TcpTransport;
+import de.medieninf.mobcomp.multris.network.transport.Transport;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Puts load on the host path without phones. For every number of clients a LoadHost and that many
+ *         BotClients play lockstep rounds against each other within this JVM, over the loopback or the TCP transport.
+ *         After warming up, one line is printed per run:
+ * 
+ *         msgs/s in and out of the host, percentiles of the time an input needs from the sending Bot through the host
+ *         to the receiving Bots, and the CPU the host threads use, in total and per client. Where msgs/s stop
+ *         growing with the clients and the latency jumps, the host is saturated.
+ * 
+ *         Options: -clients 1,3,7 -seconds 20 -warmup 3 -tps 40 -transport loopback|tcp -port 47100
+ * */
+public class LoadGenerator {
+
+	private int[] clientCounts = { 1, 3, 7 };
+	private int seconds = 20;
+	private int warmup = 3;
+	private int ticksPerSecond = GameState.TICKS_PER_SECOND;
+	private boolean tcp = false;
+	private int port = 47100;
+
+	public static void main(String[] args) throws Exception {
+		LoadGenerator loadGenerator = new LoadGenerator();
+		loadGenerator.parse(args);
+		loadGenerator.run();
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String option = args[i];
+			String value = args[i + 1];
+			if (option.equals("-clients")) {
+				String[] counts = value.split(",");
+				clientCounts = new int[counts.length];
+				for (int c = 0; c < counts.length; c++) {
+					clientCounts[c] = Integer.parseInt(counts[c].trim());
+				}
+			} else if (option.equals("-seconds")) {
+				seconds = Integer.parseInt(value);
+			} else if (option.equals("-warmup")) {
+				warmup = Integer.parseInt(value);
+			} else if (option.equals("-tps")) {
+				ticksPerSecond = Integer.parseInt(value);
+			} else if (option.equals("-transport")) {
+				tcp = value.equals("tcp");
+			} else if (option.equals("-port")) {
+				port = Integer.parseInt(value);
+			} else {
+				throw new RuntimeException("Unknown option: " + option);
+			}
+		}
+		if (args.length % 2 != 0) {
+			throw new RuntimeException("Option without value: " + args[args.length - 1]);
+		}
+	}
+
+	private void run() throws Exception {
+		System.out.println(String.format("transport %s, %d ticks/s, %d s per run after %d s warmup",
+				tcp ? "tcp" : "loopback", ticksPerSecond, seconds, warmup));
+		System.out.println(String.format("%7s %9s %9s %8s %8s %8s %8s %8s %9s %6s", "clients", "in/s", "out/s",
+				"p50 ms", "p90 ms", "p99 ms", "max ms", "host cpu", "cpu/cli", "rounds"));
+		for (int r = 0; r < clientCounts.length; r++) {
+			runOnce(clientCounts[r], port + r);
+		}
+	}
+
+	/**
+	 * Runs the host with a number of clients and prints the results
+	 * */
+	private void runOnce(int clientCount, int runPort) throws Exception {
+		SendClock sendClock = new SendClock(clientCount + 1);
+		String hostAddress = tcp ? "127.0.0.1:" + runPort : "host";
+		LoadHost host = new LoadHost(createTransport(hostAddress, runPort), clientCount, ticksPerSecond, sendClock);
+		host.listen();
+		ArrayList<BotClient> clients = new ArrayList<BotClient>();
+		for (int c = 1; c <= clientCount; c++) {
+			BotClient client = new BotClient(createTransport("bot" + c, 0), hostAddress, c, ticksPerSecond, sendClock);
+			client.start(); // the player number comes with START_GAME
+			clients.add(client);
+		}
+
+		Thread.sleep(warmup * 1000L);
+		ArrayList<Bot> bots = new ArrayList<Bot>();
+		bots.add(host.getBot());
+		for (BotClient client : clients) {
+			bots.add(client.getBot());
+		}
+		for (Bot bot : bots) {
+			bot.getLatencies().clear();
+		}
+		long roundsBefore = host.getRounds();
+		long inBefore = host.getFramesReceived();
+		long outBefore = host.getFramesWritten();
+		long cpuBefore = cpuTime(host.getThreads());
+		long start = System.nanoTime();
+
+		Thread.sleep(seconds * 1000L);
+
+		long elapsed = System.nanoTime() - start;
+		long cpu = cpuTime(host.getThreads()) - cpuBefore;
+		long in = host.getFramesReceived() - inBefore;
+		long out = host.getFramesWritten() - outBefore;
+		long rounds = host.getRounds() - roundsBefore;
+		LatencyRecorder latencies = new LatencyRecorder();
+		for (Bot bot : bots) {
+			latencies.addAll(bot.getLatencies());
+		}
+		long discarded = host.getFramesDiscarded(); // gone with the connections
+
+		// nobody may send anymore once the first connection is closed
+		host.stopTicking();
+		for (BotClient client : clients) {
+			client.stopTicking();
+		}
+		for (BotClient client : clients) {
+			client.stop();
+		}
+		host.stop();
+
+		double perSecond = 1e9 / elapsed;
+		double cpuShare = 100.0 * cpu / elapsed; // percent of one core
+		System.out.println(String.format("%7d %9.0f %9.0f %8.2f %8.2f %8.2f %8.2f %7.1f%% %8.2f%% %6d", clientCount,
+				in * perSecond, out * perSecond, millis(latencies.percentile(50)), millis(latencies.percentile(90)),
+				millis(latencies.percentile(99)), millis(latencies.percentile(100)), cpuShare, cpuShare / clientCount,
+				rounds));
+		if (discarded > 0) {
+			System.out.println("        " + discarded + " frames dropped or coalesced");
+		}
+	}
+
+	private Transport createTransport(String address, int listenPort) {
+		if (tcp) {
+			return new TcpTransport(address, listenPort);
+		}
+		return new LoopbackTransport(address);
+	}
+
+	/**
+	 * Sums up the CPU time of threads. Threads that have ended count with nothing
+	 * */
+	private static long cpuTime(Thread[] threads) {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (Thread thread : threads) {
+			long time = threadMXBean.getThreadCpuTime(thread.getId());
+			if (time > 0) {
+				total += time;
+			}
+		}
+		return total;
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
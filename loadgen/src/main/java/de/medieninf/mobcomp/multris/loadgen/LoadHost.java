@@ -0,0 +1,199 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.medieninf.mobcomp.multris.network.BTMessage;
+import de.medieninf.mobcomp.multris.network.ConnectionManager;
+import de.medieninf.mobcomp.multris.network.transport.Transport;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         The server side of a load test. Runs the ConnectionManager BluetoothService runs on the devices, so the load
+ *         is put on the very same host path: accepting, relaying, the writer threads and the processing of the decoded
+ *         messages. The host plays too, as player 0.
+ * 
+ *         A round ends when every player has reported GAME_OVER, then the host starts the next one with START_GAME.
+ * */
+public class LoadHost implements Bot.Outbox, ConnectionManager.Listener {
+
+	private final ConnectionManager connectionManager;
+	private final int playerCount;
+	private final Bot bot;
+	private final Ticker ticker;
+	private final ThreadGroup threadGroup = new ThreadGroup("LoadHost"); // threads of the host, for the CPU time
+	private final CountDownLatch listening = new CountDownLatch(1);
+	private final CountDownLatch allConnected;
+
+	private final HashSet<String> finished = new HashSet<String>(); // players whose round is over
+	private final AtomicLong rounds = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param transport
+	 *            transport of the host
+	 * @param clientCount
+	 *            number of clients that have to connect before the first round
+	 * @param ticksPerSecond
+	 *            ticks of the Bot of the host per second
+	 * @param sendClock
+	 *            shared clock of all Bots
+	 * */
+	public LoadHost(Transport transport, int clientCount, int ticksPerSecond, SendClock sendClock) {
+		this.playerCount = clientCount + 1;
+		connectionManager = new ConnectionManager(transport, this);
+		connectionManager.setServer(true);
+		connectionManager.setLockstep(true);
+		allConnected = new CountDownLatch(clientCount);
+		bot = new Bot(transport.getLocalAddress(), 0, this, sendClock);
+		ticker = new Ticker(bot, ticksPerSecond, "HostTicker");
+	}
+
+	/**
+	 * Starts listening. Returns as soon as the clients can connect, the first round starts once all of them are
+	 * connected. The ConnectionManager is started from a thread of the host, so every thread it creates belongs to the
+	 * host as well
+	 * */
+	public void listen() throws InterruptedException {
+		Thread starter = new Thread(threadGroup, "HostStarter") {
+			@Override
+			public void run() {
+				connectionManager.start();
+				listening.countDown();
+				try {
+					allConnected.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				connectionManager.stopAccepting();
+				startRound();
+			}
+		};
+		starter.start();
+		ticker.start();
+		listening.await();
+	}
+
+	/**
+	 * Sends START_GAME with a new seed to every client, each with its own player number, and starts the own round.
+	 * Never called while holding a lock, the Bot takes its own
+	 * */
+	private void startRound() {
+		connectionManager.startGame();
+		rounds.incrementAndGet();
+		bot.startRound(0, playerCount, connectionManager.getLockstepSeed());
+	}
+
+	/**
+	 * Counts the end of a player
+	 * 
+	 * @param pid
+	 *            id of the player
+	 * @return true if every player is done and the next round can start, else false
+	 * */
+	private synchronized boolean playerFinished(String pid) {
+		finished.add(pid);
+		if (finished.size() < playerCount) {
+			return false;
+		}
+		finished.clear();
+		return true;
+	}
+
+	/**
+	 * Messages of the Bot of the host
+	 * */
+	public void send(BTMessage btmsg) {
+		connectionManager.write(btmsg, true);
+		if (btmsg.getmID() == BTMessage.GAME_OVER && playerFinished(btmsg.getpID())) { // the host counts as well
+			startRound();
+		}
+	}
+
+	public void stateChanged(int state) {
+	}
+
+	public void connected(String address, String name) {
+		allConnected.countDown();
+	}
+
+	public void connectionFailed() {
+	}
+
+	public void connectionLost(String address) {
+		// the clients leave at the end of every run, the ConnectionManager stops afterwards
+	}
+
+	public void pauseReceived() {
+	}
+
+	public void resumeReceived() {
+	}
+
+	public void gameStarted(int playerNo, int playerCount, boolean lockstep, int seed) {
+	}
+
+	/**
+	 * Hands a decoded message to the Bot of the host and starts the next round once every player is done
+	 * */
+	public void messageReceived(BTMessage btmsg) {
+		if (btmsg.getmID() == BTMessage.GAME_OVER && playerFinished(btmsg.getpID())) {
+			startRound();
+			return;
+		}
+		bot.receive(btmsg);
+	}
+
+	/**
+	 * Stops the Bot of the host, the connections stay open
+	 * */
+	public void stopTicking() throws InterruptedException {
+		ticker.cancel();
+	}
+
+	/**
+	 * Stops all threads and closes every connection
+	 * */
+	public void stop() throws InterruptedException {
+		ticker.cancel();
+		connectionManager.stop();
+	}
+
+	/**
+	 * @return threads of the host, including the ones of the connections
+	 * */
+	public Thread[] getThreads() {
+		Thread[] threads = new Thread[threadGroup.activeCount() + 8]; // room for threads started meanwhile
+		int count = threadGroup.enumerate(threads);
+		Thread[] all = new Thread[count + 1];
+		System.arraycopy(threads, 0, all, 0, count);
+		all[count] = ticker;
+		return all;
+	}
+
+	public Bot getBot() {
+		return bot;
+	}
+
+	public long getFramesReceived() {
+		return connectionManager.getFramesReceived();
+	}
+
+	public long getFramesWritten() {
+		return connectionManager.getFramesWritten();
+	}
+
+	public long getRounds() {
+		return rounds.get();
+	}
+
+	/**
+	 * @return frames the OutboundQueues of the connections have dropped or coalesced
+	 * */
+	public long getFramesDiscarded() {
+		return connectionManager.getFramesDiscarded();
+	}
+}
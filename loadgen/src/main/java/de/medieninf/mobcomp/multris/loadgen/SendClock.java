@@ -0,0 +1,56 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Remembers when each input batch has been sent. The host and all bots run in the same JVM, so the receiver
+ *         can look the time up with System.nanoTime() as a common clock, and nothing has to be added to the frames.
+ * */
+public class SendClock {
+
+	private static final int WINDOW = 4096; // ticks remembered per player, far more than are in flight
+
+	private final AtomicLongArray[] sentAt; // player -> firstTick % WINDOW -> nanoTime
+
+	/**
+	 * Constructor
+	 * 
+	 * @param playerCount
+	 *            number of players
+	 * */
+	public SendClock(int playerCount) {
+		sentAt = new AtomicLongArray[playerCount];
+		for (int p = 0; p < playerCount; p++) {
+			sentAt[p] = new AtomicLongArray(WINDOW);
+		}
+	}
+
+	/**
+	 * Stores the send time of a batch
+	 * 
+	 * @param playerNo
+	 *            player that sends the batch
+	 * @param firstTick
+	 *            first tick of the batch
+	 * */
+	public void sent(int playerNo, int firstTick) {
+		sentAt[playerNo].set(firstTick % WINDOW, System.nanoTime());
+	}
+
+	/**
+	 * Calculates how long a batch has been on its way
+	 * 
+	 * @param playerNo
+	 *            player that has sent the batch
+	 * @param firstTick
+	 *            first tick of the batch
+	 * @return nanoseconds since the batch has been sent, -1 if unknown
+	 * */
+	public long elapsed(int playerNo, int firstTick) {
+		long sent = sentAt[playerNo].get(firstTick % WINDOW);
+		long elapsed = System.nanoTime() - sent;
+		return sent == 0 || elapsed < 0 ? -1 : elapsed;
+	}
+}
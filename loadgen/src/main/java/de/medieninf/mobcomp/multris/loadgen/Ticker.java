@@ -0,0 +1,56 @@
+package de.medieninf.mobcomp.multris.loadgen;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Ticks a Bot at a fixed rate. A Ticker that falls behind catches up without sleeping, like a device that
+ *         has been busy.
+ * */
+public class Ticker extends Thread {
+
+	private final Bot bot;
+	private final long tickNanos;
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param bot
+	 *            Bot to tick
+	 * @param ticksPerSecond
+	 *            rate of the ticks
+	 * @param name
+	 *            name of the thread
+	 * */
+	public Ticker(Bot bot, int ticksPerSecond, String name) {
+		super(name);
+		this.bot = bot;
+		this.tickNanos = 1000000000L / ticksPerSecond;
+	}
+
+	@Override
+	public void run() {
+		long next = System.nanoTime();
+		try {
+			while (running) {
+				bot.tick();
+				next += tickNanos;
+				long sleep = next - System.nanoTime();
+				if (sleep > 0) {
+					Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+				}
+			}
+		} catch (InterruptedException e) {
+
+		}
+	}
+
+	/**
+	 * Stops ticking after the current tick
+	 * */
+	public void cancel() throws InterruptedException {
+		running = false;
+		interrupt();
+		join();
+	}
+}
@@ -21,12 +21,12 @@ import android.view.Window;
 import android.view.WindowManager;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import de.medieninf.mobcomp.multris.R;
-import de.medieninf.mobcomp.multris.network.BTMessage;
 import de.medieninf.mobcomp.multris.network.helpers.DeviceContainer;
 
 /**
@@ -62,6 +62,7 @@ public class ConnectionActivity extends Activity {
 
 	// Layout Views
 	private Button createGameButton, searchGameButton, startGameButton;
+	private CheckBox lockstepCheckBox; // server: play the next game in lockstep mode
 	private ProgressBar progressBar;
 	private TextView listTitle;
 	private DeviceAdapter devicesAdapter;
@@ -100,7 +101,8 @@ public class ConnectionActivity extends Activity {
 			case MSG_START_GAME:
 				int playerNo = msg.arg1;
 				int playerCount = msg.arg2;
-				goToGame(playerNo, playerCount);
+				Integer[] gameInfo = (Integer[]) msg.obj;
+				goToGame(playerNo, playerCount, gameInfo[2] != 0, gameInfo[3]);
 				break;
 			case MSG_NEW_DEVICE_FOUND:
 				devicesAdapter.add((DeviceContainer) msg.obj);
@@ -143,11 +145,12 @@ public class ConnectionActivity extends Activity {
 				break;
 			case R.id.start_multiplayer_game:
 				if (bluetoothService.isMyDeviceServer()) {
+					bluetoothService.setLockstep(lockstepCheckBox.isChecked());
 					bluetoothService.stopAccepting();
-					bluetoothService.write(new BTMessage(BTMessage.START_GAME), true);
+					bluetoothService.startGame();
 				}
 				// 0 because this device always is server
-				goToGame(0, 1);
+				goToGame(0, bluetoothService.getPlayerCount(), bluetoothService.isLockstep(), bluetoothService.getLockstepSeed());
 				break;
 			}
 		}
@@ -184,6 +187,7 @@ public class ConnectionActivity extends Activity {
 		createGameButton = (Button) findViewById(R.id.create_multiplayer_game);
 		searchGameButton = (Button) findViewById(R.id.search_multiplayer_game);
 		startGameButton = (Button) findViewById(R.id.start_multiplayer_game);
+		lockstepCheckBox = (CheckBox) findViewById(R.id.lockstep_game);
 
 		// add listeners
 		createGameButton.setOnClickListener(buttonListener);
@@ -273,11 +277,13 @@ public class ConnectionActivity extends Activity {
 	/**
 	 * Makes an Intent to start TetrisActivity
 	 * */
-	private void goToGame(int playerNo, int playerCount) {
+	private void goToGame(int playerNo, int playerCount, boolean lockstep, int seed) {
 		Intent intent = new Intent(ConnectionActivity.this, TetrisActivity.class);
 		intent.putExtra(TetrisActivity.EXTRA_MULTIPLAYER, true);
 		intent.putExtra(TetrisActivity.EXTRA_PLAYER_NO, playerNo);
 		intent.putExtra(TetrisActivity.EXTRA_PLAYER_COUNT, playerCount);
+		intent.putExtra(TetrisActivity.EXTRA_LOCKSTEP, lockstep);
+		intent.putExtra(TetrisActivity.EXTRA_SEED, seed);
 		startActivityForResult(intent, REQUEST_START_GAME);
 	}
 
@@ -313,10 +319,12 @@ public class ConnectionActivity extends Activity {
 			searchGameButton.setEnabled(true);
 			searchGameButton.setText(R.string.button_search);
 			startGameButton.setEnabled(false);
+			lockstepCheckBox.setEnabled(true);
 			return;
 		}
 
 		boolean server = bluetoothService.isMyDeviceServer();
+		lockstepCheckBox.setEnabled(server); // the server decides the mode of the game
 		if (server) {
 			switch (state) {
 			case BluetoothService.STATE_LISTEN:
@@ -6,10 +6,7 @@ import java.util.Observer;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.Rect;
 import android.os.Binder;
 import android.os.Handler;
@@ -21,6 +18,9 @@ import de.medieninf.mobcomp.multris.R;
 import de.medieninf.mobcomp.multris.game.GameState;
 import de.medieninf.mobcomp.multris.game.data.Shape;
 import de.medieninf.mobcomp.multris.network.BTMessage;
+import de.medieninf.mobcomp.multris.view.BrickAtlas;
+import de.medieninf.mobcomp.multris.view.GameRenderer;
+import de.medieninf.mobcomp.multris.view.RenderResources;
 
 /**
  * 
@@ -40,8 +40,9 @@ public class GameService extends Service implements Observer {
 	private boolean isServer;
 
 	// for drawing
-	private Bitmap[] bitmaps;
 	private int bricksize;
+	private volatile GameRenderer renderer; // null until the BrickAtlas is loaded
+	private RenderResources renderResources;
 
 	// game components
 	private GameState gameState;
@@ -67,7 +68,8 @@ public class GameService extends Service implements Observer {
 		super.onCreate();
 		// init presentation
 		initMeasures();
-		initBitmaps();
+		initRenderResources();
+		new AtlasLoaderThread().start();
 	}
 
 	@Override
@@ -107,6 +109,23 @@ public class GameService extends Service implements Observer {
 		}
 	}
 
+	/**
+	 * Initializes the GameState of a multiplayer game in lockstep mode. Every device simulates the whole game, so only
+	 * the inputs of this player and the pause events are sent.
+	 * 
+	 * @param playerNo
+	 *            number of this player
+	 * @param playerCount
+	 *            number of players
+	 * @param seed
+	 *            seed shared by all devices
+	 * */
+	public void initNewLockstepGame(int playerNo, int playerCount, int seed) {
+		gameState = new GameState(playerNo, playerCount, seed);
+		gameState.setMyId(myId);
+		gameState.addObserver(this);
+	}
+
 	/**
 	 * Calculates the measures of the game area
 	 * 
@@ -128,27 +147,11 @@ public class GameService extends Service implements Observer {
 	}
 
 	/**
-	 * Initializes the Bitmaps that are used to display the Shapes and stores them in the global Array "bitmaps".
+	 * Initializes the colors and Paints of a frame. The bricks are loaded by the AtlasLoaderThread
 	 */
-	private void initBitmaps() {
-		Bitmap bm_0 = BitmapFactory.decodeResource(getResources(), R.drawable.brick_transparent);
-		Bitmap bm_blue = BitmapFactory.decodeResource(getResources(), R.drawable.brick_o);
-		Bitmap bm_cyan = BitmapFactory.decodeResource(getResources(), R.drawable.brick_t);
-		Bitmap bm_green = BitmapFactory.decodeResource(getResources(), R.drawable.brick_i);
-		Bitmap bm_magenta = BitmapFactory.decodeResource(getResources(), R.drawable.brick_j);
-		Bitmap bm_orange = BitmapFactory.decodeResource(getResources(), R.drawable.brick_l);
-		Bitmap bm_red = BitmapFactory.decodeResource(getResources(), R.drawable.brick_s);
-		Bitmap bm_yellow = BitmapFactory.decodeResource(getResources(), R.drawable.brick_z);
-
-		bitmaps = new Bitmap[8];
-		bitmaps[0] = Bitmap.createScaledBitmap(bm_0, bricksize, bricksize, false);
-		bitmaps[1] = Bitmap.createScaledBitmap(bm_blue, bricksize, bricksize, false);
-		bitmaps[2] = Bitmap.createScaledBitmap(bm_cyan, bricksize, bricksize, false);
-		bitmaps[3] = Bitmap.createScaledBitmap(bm_green, bricksize, bricksize, false);
-		bitmaps[4] = Bitmap.createScaledBitmap(bm_magenta, bricksize, bricksize, false);
-		bitmaps[5] = Bitmap.createScaledBitmap(bm_orange, bricksize, bricksize, false);
-		bitmaps[6] = Bitmap.createScaledBitmap(bm_red, bricksize, bricksize, false);
-		bitmaps[7] = Bitmap.createScaledBitmap(bm_yellow, bricksize, bricksize, false);
+	private void initRenderResources() {
+		renderResources = new RenderResources(getResources().getColor(R.color.one), getResources().getColor(R.color.white),
+				new Rect(left, top, right, bottom));
 	}
 
 	/**
@@ -158,24 +161,21 @@ public class GameService extends Service implements Observer {
 	 *            Canvas the environment is drawn on
 	 */
 	public void drawTetrisEnvironment(Canvas canvas) {
+		GameRenderer renderer = this.renderer;
 		if (canvas != null) {
-			canvas.drawColor(getResources().getColor(R.color.one));
-			Paint fieldPaint = new Paint();
-			fieldPaint.setColor(getResources().getColor(R.color.one));
-			canvas.drawRect(new Rect(left, top, right, bottom), fieldPaint);
-			gameState.getWall().draw(canvas, bitmaps, top, left, bricksize);
+			renderResources.drawBackground(canvas);
+			if (renderer == null) { // bricks not loaded yet
+				return;
+			}
+			renderer.drawWall(canvas, gameState.getWall());
 			// Draw myShape
-			gameState.getMyShape().draw(canvas, bitmaps, bricksize, top, left, true);
+			renderer.drawShape(canvas, gameState.getMyShape(), true);
 			// Draw otherShapes
-			for (Shape shape : gameState.getOtherShapes()) {
-				shape.draw(canvas, bitmaps, bricksize, top, left, false);
+			Shape[] otherShapes = gameState.getOtherShapeArray();
+			for (int i = 0; i < otherShapes.length; i++) {
+				renderer.drawShape(canvas, otherShapes[i], false);
 			}
-
-			Paint textPaint = new Paint();
-			textPaint.setTextAlign(Paint.Align.LEFT);
-			textPaint.setColor(getResources().getColor(R.color.white));
-			textPaint.setTextSize(20);
-			canvas.drawText("Score: " + String.valueOf(gameState.getPoints()), 0, top + textPaint.getTextSize(), textPaint);
+			renderResources.drawScore(canvas, gameState.getPoints());
 		}
 	}
 
@@ -348,4 +348,23 @@ public class GameService extends Service implements Observer {
 		gameHandler.obtainMessage(BTMessage.RESUME_GAME).sendToTarget();
 		gameState.setPaused(false, false);
 	}
+
+	/**
+	 * Loads the BrickAtlas for the current bricksize, so that onCreate() does not have to wait for the bricks to be
+	 * decoded. The GameRenderer is set up as soon as it is there
+	 */
+	private class AtlasLoaderThread extends Thread {
+
+		public AtlasLoaderThread() {
+			super("AtlasLoaderThread");
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			BrickAtlas atlas = BrickAtlas.load(getResources(), getCacheDir(), bricksize, renderResources.getBackground());
+			renderer = new GameRenderer(atlas, top, left, renderResources);
+			Log.v(TAG, "brick atlas ready after " + (System.nanoTime() - start) / 1000000 + " ms");
+		}
+	}
 }
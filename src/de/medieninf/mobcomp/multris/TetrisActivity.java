@@ -22,10 +22,10 @@ import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.EditText;
 import de.medieninf.mobcomp.multris.R;
-import de.medieninf.mobcomp.multris.game.GameThread;
 import de.medieninf.mobcomp.multris.game.persistence.Highscore;
 import de.medieninf.mobcomp.multris.game.persistence.HighscoreDBAdapter;
 import de.medieninf.mobcomp.multris.network.BTMessage;
+import de.medieninf.mobcomp.multris.view.GameThread;
 import de.medieninf.mobcomp.multris.view.TetrisView;
 
 /**
@@ -43,6 +43,8 @@ public class TetrisActivity extends Activity {
 	public static final String EXTRA_MULTIPLAYER = "multiplayer";
 	public static final String EXTRA_PLAYER_NO = "player_no";
 	public static final String EXTRA_PLAYER_COUNT = "player_count";
+	public static final String EXTRA_LOCKSTEP = "lockstep";
+	public static final String EXTRA_SEED = "seed";
 
 	public static final int RESULT_GAMEOVER = 1;
 	public static final int DIALOG_NEW_HIGHSCORE = 1;
@@ -59,6 +61,8 @@ public class TetrisActivity extends Activity {
 	private boolean newGame;
 
 	private int playerCount;
+	private boolean lockstep;
+	private int seed;
 
 	private ServiceConnection gameServiceConnection = new ServiceConnection() {
 		public void onServiceConnected(ComponentName name, IBinder service) {
@@ -107,7 +111,7 @@ public class TetrisActivity extends Activity {
 			if (gameService.isPaused() && (isMultiplayer == gameService.isMultiplayer()) && !newGame) {
 				startTetrisView();
 			} else {
-				gameService.initNewGame(isMultiplayer, playerNo, playerCount);
+				initNewGame();
 				startTetrisView();
 			}
 			gameService.setPaused(false);
@@ -115,13 +119,24 @@ public class TetrisActivity extends Activity {
 			if (gameService.isPaused() && (isMultiplayer == gameService.isMultiplayer())) {
 				showDialog(DIALOG_RESUME_GAME);
 			} else {
-				gameService.initNewGame(isMultiplayer, playerNo, playerCount);
+				initNewGame();
 				startTetrisView();
 			}
 		}
 		newGame = false;
 	}
 
+	/**
+	 * Lets the GameService start a new game in the mode this Activity was started with
+	 */
+	private void initNewGame() {
+		if (lockstep) {
+			gameService.initNewLockstepGame(playerNo, playerCount, seed);
+		} else {
+			gameService.initNewGame(isMultiplayer, playerNo, playerCount);
+		}
+	}
+
 	/**
 	 * Pauses the Game depending on the Mutiplayerstate
 	 */
@@ -170,6 +185,8 @@ public class TetrisActivity extends Activity {
 		if (isMultiplayer) {
 			playerNo = (Integer) getIntent().getExtras().get(EXTRA_PLAYER_NO);
 			playerCount = (Integer) getIntent().getExtras().get(EXTRA_PLAYER_COUNT);
+			lockstep = (Boolean) getIntent().getExtras().get(EXTRA_LOCKSTEP);
+			seed = (Integer) getIntent().getExtras().get(EXTRA_SEED);
 		} else {
 			playerNo = 0;
 			playerCount = 1;
@@ -238,7 +255,7 @@ public class TetrisActivity extends Activity {
 				@Override
 				public void onClick(View view) {
 					resumeDialog.dismiss();
-					gameService.initNewGame(isMultiplayer, playerNo, playerCount);
+					initNewGame();
 					startTetrisView();
 				}
 			});
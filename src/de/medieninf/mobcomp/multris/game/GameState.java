@@ -12,8 +12,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import de.medieninf.mobcomp.multris.game.data.Score;
 import de.medieninf.mobcomp.multris.game.data.Shape;
 import de.medieninf.mobcomp.multris.game.data.Wall;
+import de.medieninf.mobcomp.multris.game.data.WallDelta;
+import de.medieninf.mobcomp.multris.game.enums.GeneratorMode;
 import de.medieninf.mobcomp.multris.game.enums.Motion;
+import de.medieninf.mobcomp.multris.game.enums.ShapeType;
 import de.medieninf.mobcomp.multris.game.enums.Speed;
+import de.medieninf.mobcomp.multris.game.lockstep.InputBatch;
+import de.medieninf.mobcomp.multris.game.lockstep.InputBuffer;
 import de.medieninf.mobcomp.multris.network.BTMessage;
 
 /**
@@ -34,14 +39,21 @@ public class GameState extends Observable {
 	private AtomicBoolean slowDownTouched = new AtomicBoolean(false);
 	private LinkedBlockingQueue<BTMessage> incomingQueue = new LinkedBlockingQueue<BTMessage>();
 
-	private static int ticks = 0;
+	private int ticks = 0;
+	private int dockedShapes = 0;
 
 	public static final int COLS = 10;
 	public static final int ROWS = 20;
+	public static final int TICKS_PER_SECOND = 40;
+	public static final int INPUT_DELAY = 8; // lockstep: ticks an input is scheduled ahead to hide the latency
+	public static final int INPUT_BATCH_SIZE = 2; // lockstep: inputs sent together
+	private static final int SPAWN_SLOTS_PER_BAND = COLS / ShapeType.MODEL_SIZE; // Shapes that start side by side
 
 	private Map<String, Shape> otherShapes; // otherPlayersId -> Shape
+	private volatile Shape[] otherShapeArray = new Shape[0]; // values of otherShapes, for drawing without an Iterator
 	private Shape myShape;
 	private Wall wall;
+	private ShapeGenerator shapeGenerator;
 
 	private boolean isMultiplayer;
 	private boolean isServer;
@@ -49,45 +61,113 @@ public class GameState extends Observable {
 	private String myId;
 	private Score score;
 	boolean scoreChanged;
+	private boolean wallRequested; // client: waiting for the whole Wall after the versions have drifted apart
 
 	private int playerNo;
 	private int playerCount;
 
+	// lockstep mode
+	private boolean isLockstep;
+	private Shape[] shapes; // playerNo -> Shape
+	private ShapeGenerator[] shapeGenerators; // playerNo -> generator
+	private InputBuffer inputBuffer;
+	private byte[] pendingInputs; // own inputs that have not been sent yet
+	private int pendingCount;
+	private int simTick; // next tick to be simulated
+
 	/**
-	 * Constructor
+	 * Constructor. The ShapeTypes are drawn at random with an unknown seed.
 	 * 
 	 * @param rows
 	 *            number of rows of the game area
 	 * */
 	public GameState(boolean isServer, boolean isMultiplayer, int playerNo, int playerCount) {
+		this(isServer, isMultiplayer, playerNo, playerCount, new ShapeGenerator(System.nanoTime(), GeneratorMode.RANDOM));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param shapeGenerator
+	 *            generator of the ShapeTypes of this player
+	 * */
+	public GameState(boolean isServer, boolean isMultiplayer, int playerNo, int playerCount, ShapeGenerator shapeGenerator) {
 		this.isServer = isServer;
 		this.isMultiplayer = isMultiplayer;
 		this.playerNo = playerNo;
 		this.playerCount = playerCount;
+		this.shapeGenerator = shapeGenerator;
 		otherShapes = new HashMap<String, Shape>();
-		myShape = new Shape(calculateInitialXPos(playerNo, playerCount), 0);
+		myShape = new Shape(calculateInitialXPos(playerNo, playerCount), calculateInitialYPos(playerNo), shapeGenerator.next());
+		wall = new Wall();
+		score = new Score();
+	}
+
+	/**
+	 * Constructor for the lockstep mode. Every device simulates the Shapes of all players itself, the devices only
+	 * exchange their inputs. All devices have to use the same seed.
+	 * 
+	 * @param playerNo
+	 *            number of this player
+	 * @param playerCount
+	 *            number of players
+	 * @param seed
+	 *            seed of the ShapeGenerators, shared by all devices
+	 * */
+	public GameState(int playerNo, int playerCount, long seed) {
+		this.isServer = playerNo == 0;
+		this.isMultiplayer = true;
+		this.isLockstep = true;
+		this.playerNo = playerNo;
+		this.playerCount = playerCount;
+		otherShapes = new HashMap<String, Shape>();
+		shapes = new Shape[playerCount];
+		shapeGenerators = new ShapeGenerator[playerCount];
+		for (int p = 0; p < playerCount; p++) {
+			shapeGenerators[p] = new ShapeGenerator(seed + p, GeneratorMode.BAG);
+			shapes[p] = new Shape(calculateInitialXPos(p, playerCount), calculateInitialYPos(p), shapeGenerators[p].next());
+			if (p != playerNo) {
+				putOtherShape(String.valueOf(p), shapes[p]);
+			}
+		}
+		myShape = shapes[playerNo];
+		shapeGenerator = shapeGenerators[playerNo];
+		inputBuffer = new InputBuffer(playerCount, INPUT_DELAY);
+		pendingInputs = new byte[INPUT_BATCH_SIZE];
 		wall = new Wall();
 		score = new Score();
 	}
 
 	/**
-	 * Calculates the initial x-position of a Shape.
+	 * Calculates the initial x-position of a Shape. Every player has a spawn slot of its own, MODEL_SIZE wide and
+	 * MODEL_SIZE high, so no two Shapes start overlapping. As many slots as fit are put side by side, the players
+	 * beyond start in the next band of slots below.
 	 * 
 	 * @return initial x-Position of the Shape
 	 */
 	private int calculateInitialXPos(int playerNo, int playerCount) {
 		if (isMultiplayer) {
-			int fieldSize = COLS / playerCount;
-			if (isServer) {
-				return 1;
-			} else {
-				return (int) (fieldSize * (playerNo) + 1);
-			}
+			int fieldSize = COLS / Math.min(playerCount, SPAWN_SLOTS_PER_BAND);
+			// the server is always player 0
+			return fieldSize * (playerNo % SPAWN_SLOTS_PER_BAND) + (fieldSize - ShapeType.MODEL_SIZE + 1) / 2;
 		} else {
 			return (int) (COLS / 2.0);
 		}
 	}
 
+	/**
+	 * Calculates the initial y-position of a Shape, see calculateInitialXPos()
+	 * 
+	 * @return initial y-Position of the Shape
+	 */
+	private int calculateInitialYPos(int playerNo) {
+		if (isMultiplayer) {
+			return playerNo / SPAWN_SLOTS_PER_BAND * ShapeType.MODEL_SIZE;
+		} else {
+			return 0;
+		}
+	}
+
 	/**
 	 * Controls the progress of the GameState.
 	 * 
@@ -99,7 +179,9 @@ public class GameState extends Observable {
 				BTMessage message = incomingQueue.poll();
 				handleMessage(message);
 			}
-			if (isServer) {
+			if (isLockstep) {
+				lockstepTick();
+			} else if (isServer) {
 				serverTick();
 			} else {
 				clientTick();
@@ -107,6 +189,121 @@ public class GameState extends Observable {
 		} else {
 			serverTick();
 		}
+		myShape.publishChanges(); // one notification for all changes of this tick
+	}
+
+	/**
+	 * Does the progress in lockstep mode. Simulates all Shapes one tick as soon as the inputs of all players for this
+	 * tick have arrived, until then the game stands still. Every device does the same steps in the same order, so all
+	 * of them end up with the same GameState.
+	 * 
+	 * */
+	private void lockstepTick() {
+		if (gameOver.get() || !inputBuffer.isComplete(simTick)) {
+			return;
+		}
+		scheduleInput(simTick + INPUT_DELAY, collectTouchEvents());
+		for (int p = 0; p < playerCount && !gameOver.get(); p++) {
+			simulateShape(p, inputBuffer.get(p, simTick));
+		}
+		simTick++;
+		inputBuffer.consumedUntil(simTick);
+	}
+
+	/**
+	 * Simulates the Shape of one player for one tick in lockstep mode. Does the same as serverTick does for the own
+	 * Shape, with the input taken from the InputBuffer.
+	 * 
+	 * @param p
+	 *            number of the player
+	 * @param input
+	 *            input bits of the player for this tick
+	 * */
+	private void simulateShape(int p, int input) {
+		Shape shape = shapes[p];
+		boolean docked = isDocked(shape);
+		applyInput(shape, input);
+		if (docked) {
+			boolean shapeSuccesfullyPlaced = wall.putShapeIntoWall(shape);
+			dockedShapes++;
+			checkGameOver(shapeSuccesfullyPlaced);
+			shape.reset(calculateInitialXPos(p, playerCount), calculateInitialYPos(p), shapeGenerators[p].next());
+			score.calculateScore(wall.checkRows());
+		}
+		if (simTick % (TICKS_PER_SECOND / shape.getSpeed()) == 0) {
+			if (!isShapeColliding(shape, Motion.DOWN)) {
+				shape.update();
+			}
+		}
+	}
+
+	/**
+	 * Stores the own input for a later tick and sends it, as soon as INPUT_BATCH_SIZE inputs are together
+	 * 
+	 * @param tick
+	 *            tick the input belongs to
+	 * @param input
+	 *            input bits
+	 * */
+	private void scheduleInput(int tick, byte input) {
+		inputBuffer.put(playerNo, tick, input);
+		pendingInputs[pendingCount++] = input;
+		if (pendingCount == INPUT_BATCH_SIZE) {
+			notifyyy(new InputBatch(playerNo, tick - pendingCount + 1, pendingInputs));
+			pendingInputs = new byte[INPUT_BATCH_SIZE]; // the batch keeps the old array
+			pendingCount = 0;
+		}
+	}
+
+	/**
+	 * Collects the registered touch events as input bits and resets them
+	 * 
+	 * @return input bits
+	 * */
+	private byte collectTouchEvents() {
+		int input = 0;
+		if (leftTouched.getAndSet(false)) {
+			input |= InputBuffer.LEFT;
+		}
+		if (rightTouched.getAndSet(false)) {
+			input |= InputBuffer.RIGHT;
+		}
+		if (rotateTouched.getAndSet(false)) {
+			input |= InputBuffer.ROTATE;
+		}
+		if (speedUpTouched.getAndSet(false)) {
+			input |= InputBuffer.SPEED_UP;
+		}
+		if (slowDownTouched.getAndSet(false)) {
+			input |= InputBuffer.SLOW_DOWN;
+		}
+		return (byte) input;
+	}
+
+	/**
+	 * Applies input bits to a Shape in the same order handleTouchEvents does
+	 * 
+	 * @param shape
+	 *            Shape that is moved
+	 * @param input
+	 *            input bits
+	 * */
+	private void applyInput(Shape shape, int input) {
+		if ((input & InputBuffer.LEFT) != 0) {
+			moveLeft(shape);
+		}
+		if ((input & InputBuffer.RIGHT) != 0) {
+			moveRight(shape);
+		}
+		if ((input & InputBuffer.ROTATE) != 0) {
+			rotate(shape);
+		}
+		if ((input & InputBuffer.SPEED_UP) != 0) {
+			speedUp(shape);
+		}
+		if ((input & InputBuffer.SLOW_DOWN) != 0) {
+			slowDown(shape);
+		}
 	}
 
 	/**
@@ -144,7 +341,7 @@ public class GameState extends Observable {
 	 *            Shape to be set down
 	 * */
 	private void updateMyShape() {
-		if (ticks % (GameThread.FPS / myShape.getSpeed()) == 0) {
+		if (ticks % (TICKS_PER_SECOND / myShape.getSpeed()) == 0) {
 			ticks = 0; // that "int" doesn't explode
 			if (!isShapeColliding(myShape, Motion.DOWN)) {
 				myShape.update();
@@ -169,9 +366,10 @@ public class GameState extends Observable {
 			}
 			if (docked) {
 				boolean shapeSuccesfullyPlaced = wall.putShapeIntoWall(shape);
+				dockedShapes++;
 				checkGameOver(shapeSuccesfullyPlaced);
 				if (shape.equals(myShape)) {
-					shape.randomize(calculateInitialXPos(playerNo, playerCount), 0);
+					shape.reset(calculateInitialXPos(playerNo, playerCount), calculateInitialYPos(playerNo), shapeGenerator.next());
 				} else {
 					// TODO hat 4x wall schicken problem geloest, ergibt allerdings concurrentmodificationexception
 					// otherShapes.remove(id);
@@ -221,27 +419,27 @@ public class GameState extends Observable {
 	private void handleTouchEvents() {
 		if (leftTouched.get()) {
 			leftTouched.set(false);
-			moveLeft();
+			moveLeft(myShape);
 		}
 
 		if (rightTouched.get()) {
 			rightTouched.set(false);
-			moveRight();
+			moveRight(myShape);
 		}
 
 		if (rotateTouched.get()) {
 			rotateTouched.set(false);
-			rotate();
+			rotate(myShape);
 		}
 
 		if (speedUpTouched.get()) {
 			speedUpTouched.set(false);
-			speedUp();
+			speedUp(myShape);
 		}
 
 		if (slowDownTouched.get()) {
 			slowDownTouched.set(false);
-			slowDown();
+			slowDown(myShape);
 		}
 	}
 
@@ -258,14 +456,31 @@ public class GameState extends Observable {
 
 		switch (mId) {
 		case BTMessage.SHAPE:
-			otherShapes.put(pId, (Shape) data);
+			putOtherShape(pId, (Shape) data);
 			break;
 		case BTMessage.WALL:
 			if (!isServer) {
 				if (pId.equals(myId)) { // I am Client and my Shape has docked
-					myShape.randomize(calculateInitialXPos(playerNo, playerCount), 0);
+					myShape.reset(calculateInitialXPos(playerNo, playerCount), calculateInitialYPos(playerNo), shapeGenerator.next());
 				}
 				this.wall = (Wall) data;
+				wallRequested = false;
+			}
+			break;
+		case BTMessage.WALL_DELTA:
+			if (!isServer) {
+				if (pId.equals(myId)) { // I am Client and my Shape has docked
+					myShape.reset(calculateInitialXPos(playerNo, playerCount), calculateInitialYPos(playerNo), shapeGenerator.next());
+				}
+				if (!wall.applyDelta((WallDelta) data) && !wallRequested) {
+					wallRequested = true;
+					notifyyy(new BTMessage(BTMessage.WALL_REQUEST, myId));
+				}
+			}
+			break;
+		case BTMessage.WALL_REQUEST:
+			if (isServer) { // a client has missed a docking, send the whole Wall
+				notifyyy(new BTMessage(BTMessage.WALL, myId, wall));
 			}
 			break;
 		case BTMessage.GAME_OVER:
@@ -274,6 +489,15 @@ public class GameState extends Observable {
 		case BTMessage.POINTS:
 			score.setPoints((Integer) data);
 			break;
+		case BTMessage.INPUT:
+			if (isLockstep) {
+				InputBatch batch = (InputBatch) data;
+				// inputs of a player that is not part of this game are ignored, they have no place in the buffer
+				if (batch.getPlayerNo() >= 0 && batch.getPlayerNo() < playerCount) {
+					inputBuffer.put(batch); // a rejected batch stalls the game at its gap
+				}
+			}
+			break;
 		case BTMessage.PAUSE_GAME:
 			paused = true;
 			break;
@@ -339,11 +563,13 @@ public class GameState extends Observable {
 	/**
 	 * Moves the Shape one position to the left
 	 * 
+	 * @param shape
+	 *            Shape that is moved
 	 * @return true if moved, else false
 	 * */
-	private boolean moveLeft() {
-		if (!isShapeColliding(myShape, Motion.LEFT)) {
-			myShape.moveLeft();
+	private boolean moveLeft(Shape shape) {
+		if (!isShapeColliding(shape, Motion.LEFT)) {
+			shape.moveLeft();
 			return true;
 		}
 		return false;
@@ -352,11 +578,13 @@ public class GameState extends Observable {
 	/**
 	 * Moves the Shape one position to the right
 	 * 
+	 * @param shape
+	 *            Shape that is moved
 	 * @return true if moved, else false
 	 * */
-	private boolean moveRight() {
-		if (!isShapeColliding(myShape, Motion.RIGHT)) {
-			myShape.moveRight();
+	private boolean moveRight(Shape shape) {
+		if (!isShapeColliding(shape, Motion.RIGHT)) {
+			shape.moveRight();
 			return true;
 		}
 		return false;
@@ -365,11 +593,13 @@ public class GameState extends Observable {
 	/**
 	 * Rotates the Shape one state clockwise if no collision
 	 * 
+	 * @param shape
+	 *            Shape that is rotated
 	 * @return true if rotated, else false
 	 * */
-	private boolean rotate() {
-		if (!isShapeColliding(myShape, Motion.ROTATE)) {
-			myShape.rotate();
+	private boolean rotate(Shape shape) {
+		if (!isShapeColliding(shape, Motion.ROTATE)) {
+			shape.rotate();
 		}
 		return true;
 	}
@@ -377,43 +607,65 @@ public class GameState extends Observable {
 	/**
 	 * Sets speed of the player's Shape to default speed
 	 * */
-	private boolean speedUp() {
-		myShape.setSpeed(Speed.FAST.getValue());
+	private boolean speedUp(Shape shape) {
+		shape.setSpeed(Speed.FAST.getValue());
 		return true;
 	}
 
 	/**
 	 * Sets speed of the player's Shape to fast speed
 	 * */
-	private boolean slowDown() {
-		myShape.setSpeed(Speed.SLOW.getValue());
+	private boolean slowDown(Shape shape) {
+		shape.setSpeed(Speed.SLOW.getValue());
 		return true;
 	}
 
 	/**
 	 * Checks if the Shape is colliding after either with the Wall or another Shape
 	 * 
-	 * @param myShape
+	 * @param shape
 	 *            Shape that has to be checked
 	 * @param motion
 	 *            Sort of Motion that wants to be done
 	 * */
-	private boolean isShapeColliding(Shape myShape, Motion motion) {
-		if (wall.collidesWith(myShape, motion)) { // check collision with wall
+	private boolean isShapeColliding(Shape shape, Motion motion) {
+		// the candidate is only described by primitives, so probing allocates nothing
+		ShapeType type = shape.getShapeType();
+		int rotation = type.normalizeRotation(shape.getRotation() + motion.getDeltaRotation());
+		int posX = shape.getPosX() + motion.getDeltaX();
+		int posY = shape.getPosY() + motion.getDeltaY();
+
+		if (wall.collidesWith(type, rotation, posX, posY)) { // check collision with wall
 			return true;
 		}
 		if (isMultiplayer) { // check if there's a collision with other Shapes
-			for (Shape otherShape : otherShapes.values()) {
-				if (!myShape.equals(otherShape)) {
-					if (myShape.collidesWith(otherShape, motion)) {
+			Shape[] others = otherShapeArray; // no Iterator of otherShapes
+			for (int i = 0; i < others.length; i++) {
+				Shape otherShape = others[i];
+				if (!shape.equals(otherShape)) {
+					if (blocks(otherShape, type, rotation, posX, posY, shape)) {
 						return true;
 					}
 				}
 			}
+			if (shape != myShape && blocks(myShape, type, rotation, posX, posY, shape)) { // lockstep moves other Shapes
+				return true;
+			}
 		}
 		return false;
 	}
 
+	/**
+	 * Checks if another Shape is in the way of a candidate. Shapes that already overlap, because one of them has been
+	 * reset into the other, do not block each other until they have separated; otherwise neither could move again.
+	 * 
+	 * @return true if blocked, else false
+	 * */
+	private boolean blocks(Shape otherShape, ShapeType type, int rotation, int posX, int posY, Shape shape) {
+		return otherShape.collidesWith(type, rotation, posX, posY)
+				&& !otherShape.collidesWith(shape.getShapeType(), shape.getRotation(), shape.getPosX(), shape.getPosY());
+	}
+
 	/**
 	 * Getter for gameOver State
 	 * 
@@ -441,6 +693,15 @@ public class GameState extends Observable {
 		return myShape;
 	}
 
+	/**
+	 * Getter for the generator of the ShapeTypes, e.g. to show the preview
+	 * 
+	 * @return shapeGenerator
+	 * */
+	public ShapeGenerator getShapeGenerator() {
+		return shapeGenerator;
+	}
+
 	/**
 	 * Getter for all Shapes
 	 * 
@@ -450,6 +711,47 @@ public class GameState extends Observable {
 		return otherShapes.values();
 	}
 
+	/**
+	 * Getter for the Shapes of the other players as an array, which can be iterated every frame without allocating.
+	 * The array is replaced when a player is added, a Shape that replaces another one takes over its slot
+	 * 
+	 * @return Shapes of the other players
+	 */
+	public Shape[] getOtherShapeArray() {
+		return otherShapeArray;
+	}
+
+	/**
+	 * Stores the Shape of another player. otherShapeArray only grows for a new player, in classic mode every SHAPE
+	 * message brings a new Shape that is written into the slot of the old one
+	 * 
+	 * @param id
+	 *            id of the other player
+	 * @param shape
+	 *            Shape of the other player
+	 */
+	private void putOtherShape(String id, Shape shape) {
+		Shape old = otherShapes.put(id, shape);
+		if (old == shape) {
+			return;
+		}
+		Shape[] others = otherShapeArray;
+		if (old == null) {
+			Shape[] grown = new Shape[others.length + 1];
+			System.arraycopy(others, 0, grown, 0, others.length);
+			grown[others.length] = shape;
+			others = grown;
+		} else {
+			for (int i = 0; i < others.length; i++) {
+				if (others[i] == old) {
+					others[i] = shape;
+					break;
+				}
+			}
+		}
+		otherShapeArray = others; // the volatile write publishes the new slot to the drawing thread as well
+	}
+
 	/**
 	 * Setter for myId
 	 * 
@@ -472,6 +774,24 @@ public class GameState extends Observable {
 		return isMultiplayer;
 	}
 
+	/**
+	 * Getter for the lockstep mode
+	 * 
+	 * @return true if only inputs are exchanged, else false
+	 */
+	public boolean isLockstep() {
+		return isLockstep;
+	}
+
+	/**
+	 * Getter for the next tick to be simulated in lockstep mode
+	 * 
+	 * @return simTick
+	 */
+	public int getSimTick() {
+		return simTick;
+	}
+
 	/**
 	 * Setter for Multiplayer Mode
 	 * 
@@ -533,6 +853,24 @@ public class GameState extends Observable {
 		return score.getPoints();
 	}
 
+	/**
+	 * Getter for the number of deleted rows
+	 * 
+	 * @return deleted rows
+	 */
+	public int getRows() {
+		return score.getRows();
+	}
+
+	/**
+	 * Getter for the number of Shapes that have been put into the Wall
+	 * 
+	 * @return docked Shapes
+	 */
+	public int getDockedShapes() {
+		return dockedShapes;
+	}
+
 	/**
 	 * Notifies its Observers when GameOver State has Changed
 	 * 
@@ -543,4 +881,26 @@ public class GameState extends Observable {
 		setChanged();
 		notifyObservers(pId);
 	}
+
+	/**
+	 * Notifies its Observers that a message has to be sent as it is
+	 * 
+	 * @param message
+	 *            message for the other devices
+	 * */
+	private void notifyyy(BTMessage message) {
+		setChanged();
+		notifyObservers(message);
+	}
+
+	/**
+	 * Notifies its Observers that own inputs have to be sent in lockstep mode
+	 * 
+	 * @param batch
+	 *            inputs of this player
+	 * */
+	private void notifyyy(InputBatch batch) {
+		setChanged();
+		notifyObservers(batch);
+	}
 }
@@ -0,0 +1,149 @@
+package de.medieninf.mobcomp.multris.game;
+
+import java.util.Random;
+
+import de.medieninf.mobcomp.multris.game.enums.GeneratorMode;
+import de.medieninf.mobcomp.multris.game.enums.ShapeType;
+
+/**
+ * @author tina schedlbauer
+ * 
+ *         Generates the sequence of ShapeTypes a player gets. The sequence only depends on the seed and the mode, so
+ *         it can be reproduced for replays, lockstep games and benchmarks. The upcoming ShapeTypes are kept in a
+ *         preview queue. Drawing the next ShapeType allocates nothing.
+ * */
+public class ShapeGenerator {
+
+	public static final int DEFAULT_PREVIEW_SIZE = 3;
+
+	private static final ShapeType[] TYPES = ShapeType.values();
+
+	private final long seed;
+	private final GeneratorMode mode;
+	private final Random random;
+
+	private ShapeType[] bag;
+	private int bagIndex;
+
+	private ShapeType[] preview; // ring buffer, head is the next ShapeType
+	private int head;
+
+	/**
+	 * Constructor for a generator with a preview of DEFAULT_PREVIEW_SIZE ShapeTypes
+	 * 
+	 * @param seed
+	 *            seed of the sequence
+	 * @param mode
+	 *            how the ShapeTypes are drawn
+	 * */
+	public ShapeGenerator(long seed, GeneratorMode mode) {
+		this(seed, mode, DEFAULT_PREVIEW_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param seed
+	 *            seed of the sequence
+	 * @param mode
+	 *            how the ShapeTypes are drawn
+	 * @param previewSize
+	 *            number of upcoming ShapeTypes that can be looked at
+	 * */
+	public ShapeGenerator(long seed, GeneratorMode mode, int previewSize) {
+		if (previewSize < 1) {
+			throw new IllegalArgumentException("previewSize must be at least 1");
+		}
+		this.seed = seed;
+		this.mode = mode;
+		this.random = new Random(seed);
+		this.bag = TYPES.clone();
+		this.bagIndex = bag.length; // empty, shuffle on first draw
+		this.preview = new ShapeType[previewSize];
+		for (int i = 0; i < previewSize; i++) {
+			preview[i] = draw();
+		}
+		this.head = 0;
+	}
+
+	/**
+	 * Takes the next ShapeType out of the preview queue and refills the queue
+	 * 
+	 * @return next ShapeType
+	 * */
+	public ShapeType next() {
+		ShapeType next = preview[head];
+		preview[head] = draw();
+		head = (head + 1) % preview.length;
+		return next;
+	}
+
+	/**
+	 * Looks at an upcoming ShapeType without taking it
+	 * 
+	 * @param i
+	 *            position in the preview queue, 0 is the ShapeType next() returns
+	 * @return upcoming ShapeType
+	 * */
+	public ShapeType getPreview(int i) {
+		if (i < 0 || i >= preview.length) {
+			throw new IndexOutOfBoundsException("preview " + i + " of " + preview.length);
+		}
+		return preview[(head + i) % preview.length];
+	}
+
+	/**
+	 * Getter for the number of upcoming ShapeTypes that can be looked at
+	 * 
+	 * @return size of the preview queue
+	 * */
+	public int getPreviewSize() {
+		return preview.length;
+	}
+
+	/**
+	 * Getter for seed
+	 * 
+	 * @return seed of the sequence
+	 * */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Getter for mode
+	 * 
+	 * @return how the ShapeTypes are drawn
+	 * */
+	public GeneratorMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Draws a new ShapeType according to the mode
+	 * 
+	 * @return drawn ShapeType
+	 * */
+	private ShapeType draw() {
+		if (mode == GeneratorMode.RANDOM) {
+			return TYPES[random.nextInt(TYPES.length)];
+		}
+		if (bagIndex == bag.length) {
+			shuffleBag();
+		}
+		return bag[bagIndex++];
+	}
+
+	/**
+	 * Refills the bag by shuffling it in place (Fisher-Yates)
+	 * */
+	private void shuffleBag() {
+		for (int i = bag.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			ShapeType tmp = bag[i];
+			bag[i] = bag[j];
+			bag[j] = tmp;
+		}
+		bagIndex = 0;
+	}
+}
@@ -1,13 +1,7 @@
 package de.medieninf.mobcomp.multris.game.data;
 
-import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Observable;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Point;
 import de.medieninf.mobcomp.multris.game.enums.Motion;
 import de.medieninf.mobcomp.multris.game.enums.ShapeType;
 
@@ -19,62 +13,62 @@ import de.medieninf.mobcomp.multris.game.enums.ShapeType;
  * Representation Class of a Tetris Shape. Does all the logic: move, rotate,
  * update..
  * */
-public class Shape extends Observable implements Serializable {
+public class Shape extends Observable {
 
-	private static final long serialVersionUID = -5819442790439696885L;
 	private final float DEFAULT_SPEED = 2.0f;
 	private int posX;
 	private int posY;
 	private int bitmapId;
 
 	private ShapeType shapeType;
-	private Boolean[][] model;
 	private int rotation;
 	private float speed;
 
 	/**
-	 * Constructor. Creates a shape with of a random type
+	 * Constructor. Creates a shape of the given type
 	 * 
 	 * @param posX
 	 *            Position on x-axis
 	 * @param posY
 	 *            Position on y-axis
+	 * @param shapeType
+	 *            type of the Shape, usually taken from a ShapeGenerator
 	 * */
-	public Shape(int posX, int posY) {
-		randomize(posX, posY);
+	public Shape(int posX, int posY, ShapeType shapeType) {
+		reset(posX, posY, shapeType);
 	}
 
 	/**
 	 * Constructor for cloning
 	 * */
-	private Shape(int posX, int posY, ShapeType shapeType, int bitmapid, int rotation, float speed, Boolean[][] model) {
+	private Shape(int posX, int posY, ShapeType shapeType, int bitmapid, int rotation, float speed) {
 		this.posX = posX;
 		this.posY = posY;
 		this.shapeType = shapeType;
 		this.bitmapId = bitmapid;
 		this.rotation = rotation;
 		this.speed = speed;
-		this.model = model;
 	}
 
 	/**
-	 * Does default settings for the attributes. Gives the Shape a random type
+	 * Does default settings for the attributes. Gives the Shape a new type
 	 * 
 	 * @param posX
 	 *            Position on x-axis
 	 * @param posY
 	 *            Position on y-axis
+	 * @param shapeType
+	 *            new type of the Shape
 	 * 
 	 * */
-	public void randomize(int posX, int posY) {
+	public void reset(int posX, int posY, ShapeType shapeType) {
 		this.posX = posX;
 		this.posY = posY;
-		this.shapeType = ShapeType.getRandom();
+		this.shapeType = shapeType;
 		this.bitmapId = shapeType.getId();
 		this.rotation = 0;
 		this.speed = DEFAULT_SPEED;
-		this.model = shapeType.getModel(rotation);
-		notifyyy();
+		markChanged();
 	}
 
 	/**
@@ -82,7 +76,7 @@ public class Shape extends Observable implements Serializable {
 	 * */
 	public void moveLeft() {
 		posX -= 1;
-		notifyyy();
+		markChanged();
 	}
 
 	/**
@@ -90,16 +84,15 @@ public class Shape extends Observable implements Serializable {
 	 * */
 	public void moveRight() {
 		posX += 1;
-		notifyyy();
+		markChanged();
 	}
 
 	/**
 	 * Rotates the Shape clockwise.
 	 * */
 	public void rotate() {
-		rotation += 1;
-		model = shapeType.getModel(rotation);
-		notifyyy();
+		rotation = shapeType.normalizeRotation(rotation + 1);
+		markChanged();
 	}
 
 	/**
@@ -107,7 +100,7 @@ public class Shape extends Observable implements Serializable {
 	 * */
 	public void update() {
 		posY += 1;
-		notifyyy();
+		markChanged();
 	}
 	
 	/**
@@ -115,7 +108,7 @@ public class Shape extends Observable implements Serializable {
 	 * */
 	public void update(int value) {
 		posY += value;
-		notifyyy();
+		markChanged();
 	}
 
 	/**
@@ -129,49 +122,39 @@ public class Shape extends Observable implements Serializable {
 	 * @return true if collision, else false
 	 * */
 	public boolean collidesWith(Shape otherShape, Motion motion) {
-		Shape tmpShape = this.clone();
-		switch (motion) {
-		case ROTATE:
-			tmpShape.rotate();
-			break;
-		case LEFT:
-			tmpShape.moveLeft();
-			break;
-		case RIGHT:
-			tmpShape.moveRight();
-			break;
-		case DOWN:
-			tmpShape.update();
-			break;
-		}
-
-		Boolean[][] tmpModel = tmpShape.getModel();
-		Boolean[][] otherModel = otherShape.getModel();
-
-		int tmpX = tmpShape.getPosX();
-		int tmpY = tmpShape.getPosY();
-		int otherX = otherShape.getPosX();
-		int otherY = otherShape.getPosY();
-
-		ArrayList<Point> tmpCoords = new ArrayList<Point>();
+		int candidateRotation = shapeType.normalizeRotation(rotation + motion.getDeltaRotation());
+		return otherShape.collidesWith(shapeType, candidateRotation, posX + motion.getDeltaX(), posY + motion.getDeltaY());
+	}
 
-		for (int row = 0; row < tmpShape.getHeight(); row++) {
-			for (int col = 0; col < tmpShape.getWidth(); col++) {
-				if (tmpModel[row][col]) {
-					tmpCoords.add(new Point(col + tmpX, row + tmpY));
-				}
+	/**
+	 * Checks if a candidate Shape would overlap this Shape. Works on the masks of the ShapeTypes only, so nothing is
+	 * allocated.
+	 * 
+	 * @param candidateType
+	 *            ShapeType of the candidate
+	 * @param candidateRotation
+	 *            normalized rotation state of the candidate
+	 * @param candidateX
+	 *            position of the candidate on x-axis
+	 * @param candidateY
+	 *            position of the candidate on y-axis
+	 * @return true if collision, else false
+	 * */
+	public boolean collidesWith(ShapeType candidateType, int candidateRotation, int candidateX, int candidateY) {
+		// only the rows both Shapes share can overlap
+		int fromY = Math.max(candidateY, posY);
+		int toY = Math.min(candidateY + candidateType.getHeight(candidateRotation), posY + getHeight());
+		for (int y = fromY; y < toY; y++) {
+			int candidateRow = candidateType.getRowMask(candidateRotation, y - candidateY);
+			int row = getRowMask(y - posY);
+			// shift the row further left onto the other one, so no negative shift is needed
+			if (candidateX >= posX) {
+				candidateRow <<= candidateX - posX;
+			} else {
+				row <<= posX - candidateX;
 			}
-		}
-
-		Point p;
-		for (int row = 0; row < otherShape.getHeight(); row++) {
-			for (int col = 0; col < otherShape.getWidth(); col++) {
-				if (otherModel[row][col]) {
-					p = new Point(col + otherX, row + otherY);
-					if (tmpCoords.contains(p)) {
-						return true;
-					}
-				}
+			if ((candidateRow & row) != 0) {
+				return true;
 			}
 		}
 		return false;
@@ -193,7 +176,7 @@ public class Shape extends Observable implements Serializable {
 	 *            Bitmapid of the shape (Should be between 1 and 7)
 	 */
 	public void setRotation(int rotation) {
-		this.rotation = rotation;
+		this.rotation = shapeType.normalizeRotation(rotation);
 	}
 
 	/**
@@ -204,7 +187,7 @@ public class Shape extends Observable implements Serializable {
 	 */
 	public void setSpeed(float speed) {
 		this.speed = speed ;
-		notifyyy();
+		markChanged();
 	}
 
 	/**
@@ -235,12 +218,43 @@ public class Shape extends Observable implements Serializable {
 	}
 
 	/**
-	 * Getter for model of this Shape
+	 * Getter for the ShapeType of this Shape
 	 * 
-	 * @return model
+	 * @return shapeType
 	 */
-	public Boolean[][] getModel() {
-		return model;
+	public ShapeType getShapeType() {
+		return shapeType;
+	}
+
+	/**
+	 * Getter for the current rotation state of this Shape
+	 * 
+	 * @return rotation state (0...rotation states of the ShapeType - 1)
+	 */
+	public int getRotation() {
+		return rotation;
+	}
+
+	/**
+	 * Getter for one row of the current model of this Shape
+	 * 
+	 * @param row
+	 *            row of the model
+	 * @return mask with bit col set if occupied
+	 */
+	public int getRowMask(int row) {
+		return shapeType.getRowMask(rotation, row);
+	}
+
+	/**
+	 * Getter for the lowest occupied row of a column of this Shape
+	 * 
+	 * @param col
+	 *            column of the model
+	 * @return lowest occupied row of the column
+	 */
+	public int getBottom(int col) {
+		return shapeType.getBottom(rotation, col);
 	}
 
 	/**
@@ -249,7 +263,7 @@ public class Shape extends Observable implements Serializable {
 	 * @return number of rows of the Shape
 	 */
 	public int getHeight() {
-		return model.length;
+		return shapeType.getHeight(rotation);
 	}
 
 	/**
@@ -258,7 +272,7 @@ public class Shape extends Observable implements Serializable {
 	 * @return number of cols the Shape
 	 */
 	public int getWidth() {
-		return model[0].length;
+		return shapeType.getWidth(rotation);
 	}
 
 	/**
@@ -271,46 +285,23 @@ public class Shape extends Observable implements Serializable {
 	}
 
 	/**
-	 * Draws the Shape onto the Canvas
-	 * 
-	 * @param canvas
-	 * @param bitmaps
-	 *            The bitmaps that exist
-	 * @param bricksize
-	 *            edge length of a box
+	 * Marks the Shape as changed. The Observers are not notified before publishChanges() is called, so several moves
+	 * during one tick end up in a single notification.
 	 * */
-	public void draw(Canvas canvas, Bitmap[] bitmaps, int bricksize, int top, int left, boolean myShape) {
-		int col = getPosX();
-		int row = getPosY();
-		for (Boolean[] arrayRow : model) {
-			for (Boolean data : arrayRow) {
-				if (data) {
-					if (myShape) {
-						canvas.drawBitmap(bitmaps[bitmapId], left + col * bricksize, top + row * bricksize, null);
-					} else {
-						Paint transparentpainthack = new Paint();
-						transparentpainthack.setAlpha(80);
-						canvas.drawBitmap(bitmaps[bitmapId], left + col * bricksize, top + row * bricksize, transparentpainthack);
-					}
-				}
-				col += 1;
-			}
-			col = getPosX();
-			row += 1;
-		}
+	private void markChanged() {
+		setChanged();
 	}
 
 	/**
-	 * Notifies its Observers
+	 * Notifies its Observers once if the Shape has changed since the last call. Called at the end of every tick.
 	 * */
-	private void notifyyy() {
-		setChanged();
+	public void publishChanges() {
 		notifyObservers();
 	}
 
 	@Override
 	public Shape clone() {
-		return new Shape(posX, posY, shapeType, bitmapId, rotation, speed, model);
+		return new Shape(posX, posY, shapeType, bitmapId, rotation, speed);
 	}
 
 	@Override
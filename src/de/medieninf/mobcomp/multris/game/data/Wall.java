@@ -1,25 +1,37 @@
 package de.medieninf.mobcomp.multris.game.data;
 
-import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import de.medieninf.mobcomp.multris.game.GameState;
 import de.medieninf.mobcomp.multris.game.enums.Motion;
+import de.medieninf.mobcomp.multris.game.enums.ShapeType;
 
 /**
  * @author tina schedlbauer
  * @author marcel bechtold
  * 
- *         This Class represents the game area. It is represented by a two-dimensional int-Array.
+ *         This Class represents the game area. It is represented as a bitboard: every row is an int whose bit
+ *         <code>col</code> is set if the brick in that column is occupied. A parallel int-Array holds the bitmap ids of
+ *         the bricks and is only used for drawing.
  * */
-public class Wall extends Observable implements Serializable {
+public class Wall extends Observable {
 
-	private static final long serialVersionUID = -1934607071978424931L;
-	private int[][] wall;
+	private int[] rowMasks; // occupancy of every row, bit col == brick in column col
+	private int[][] bricks; // bitmap ids of the bricks, only used for drawing
+	private int[] heights; // towerheight of every column
+	private int highestTower; // height of the highest tower
+	private int[] clearedRows; // rows deleted by the last checkRows(), top to bottom
+	private int clearedRowCount;
+	private int[] lockedCells; // bricks put in by the last putShapeIntoWall(), row * cols + col
+	private int lockedCellCount;
+	private int lockedBitmapId;
+	private int version; // number of completed dockings
+	private AtomicInteger dirtyRows; // rows changed since the last takeDirtyRows(), bit row set if changed
 	private int rows;
 	private int cols;
+	private int fullRow; // mask of a completely occupied row
 
 	/**
 	 * Constructor for Wall Object
@@ -28,19 +40,17 @@ public class Wall extends Observable implements Serializable {
 	public Wall() {
 		this.cols = GameState.COLS;
 		this.rows = GameState.ROWS;
-		wall = new int[rows + 1][cols];
-		fillWall();
-	}
-
-	/**
-	 * Fills the wall-Array with initial values, which are 0 in every position
-	 * */
-	private void fillWall() {
-		for (int row = 0; row < rows + 1; row++) {
-			for (int col = 0; col < cols; col++) {
-				wall[row][col] = 0;
-			}
-		}
+		this.fullRow = (1 << cols) - 1;
+		rowMasks = new int[rows];
+		bricks = new int[rows][cols];
+		heights = new int[cols];
+		highestTower = 0;
+		clearedRows = new int[rows];
+		clearedRowCount = 0;
+		lockedCells = new int[ShapeType.MODEL_SIZE * ShapeType.MODEL_SIZE];
+		lockedCellCount = 0;
+		version = 0;
+		dirtyRows = new AtomicInteger((1 << rows) - 1); // nothing has been drawn yet
 	}
 
 	/**
@@ -49,91 +59,105 @@ public class Wall extends Observable implements Serializable {
 	 * @param shape
 	 *            Shape that has to be "transformed" into Wall
 	 * 
-	 * @return true if successfully put into wall false if there was no more space left on the top of the wall (GAME
-	 *         OVER!)
+	 * @return true if successfully put into wall false if there was no more space left on the top of the wall or the
+	 *         Shape overlaps bricks, because it has started within the Wall (GAME OVER!)
 	 * */
 	public boolean putShapeIntoWall(Shape shape) {
-		int col = shape.getPosX();
-		int row = shape.getPosY();
+		int posX = shape.getPosX();
+		int posY = shape.getPosY();
+		int height = shape.getHeight();
+		int width = shape.getWidth();
+		lockedCellCount = 0;
+		lockedBitmapId = shape.getBitmapId();
 
-		Boolean model[][] = shape.getModel();
-		for (Boolean[] arrayRow : model) {
-			for (Boolean colVal : arrayRow) {
-				if (colVal) {
+		for (int row = 0; row < height; row++) {
+			int rowMask = shape.getRowMask(row);
+			for (int col = 0; col < width; col++) {
+				if ((rowMask & (1 << col)) != 0) {
 					// Check Game Over
-					if (isFull(col)) {
+					if (isFull(posX + col) || (rowMasks[posY + row] & (1 << (posX + col))) != 0) {
 						return false;
 					} else {
-						wall[row][col] = shape.getBitmapId();
-						wall[rows][col] = calculateTowerheight(col);
+						rowMasks[posY + row] |= 1 << (posX + col);
+						bricks[posY + row][posX + col] = shape.getBitmapId();
+						markDirty(1 << (posY + row));
+						raiseHeight(posX + col, rows - (posY + row));
+						lockedCells[lockedCellCount++] = (posY + row) * cols + posX + col;
 					}
 				}
-				col += 1;
 			}
-			col = shape.getPosX();
-			row += 1;
 		}
 		// printHeights();
 		return true;
 	}
 
 	/**
-	 * Checks if there is a row that has to be deleted. It starts with the highest row. If there is a full one, it gets
-	 * deleted.
+	 * Checks if there are rows that have to be deleted. First all full rows are collected, starting with the highest
+	 * row, then all of them are deleted in a single compaction pass. The deleted rows can be fetched with
+	 * getClearedRow() afterwards.
 	 * 
 	 * @return number of deleted rows *
 	 */
 	public int checkRows() {
-		int highest = getHeightOfHighestTower();
-		int deleted = 0;
-		for (int row = rows - highest; row < rows; row++) {
+		int top = rows - highestTower;
+		clearedRowCount = 0;
+		for (int row = top; row < rows; row++) {
 			if (isRowFull(row)) {
-				deleted++;
-				deleteRow(row);
-				updateHeights();
+				clearedRows[clearedRowCount++] = row;
 			}
 		}
-		return deleted;
+		if (clearedRowCount > 0) {
+			deleteClearedRows(top);
+			lowerHeights(clearedRowCount);
+		}
+		return clearedRowCount;
 	}
 
 	/**
-	 * Parses the wall-Array and actualizes the heights depending on the filling
+	 * Raises the towerheight of a column after a brick has been put into it
+	 * 
+	 * @param col
+	 *            Column the brick was put into
+	 * @param brickHeight
+	 *            height of the brick counted from the bottom
 	 * */
-	private void updateHeights() {
-		for (int col = 0; col < cols; col++) {
-			wall[rows][col] = calculateTowerheight(col);
+	private void raiseHeight(int col, int brickHeight) {
+		if (heights[col] < brickHeight) {
+			heights[col] = brickHeight;
+		}
+		if (highestTower < brickHeight) {
+			highestTower = brickHeight;
 		}
 	}
 
 	/**
-	 * Calculates the current towerheight of a specific col
+	 * Actualizes the heights after full rows have been deleted. Every column had a brick in each deleted row, so its
+	 * tower is at least deletedRows lower. Only columns whose top brick was deleted have to look further down.
 	 * 
-	 * @param col
-	 *            Column you want the height of
-	 * @return towerheight of col
+	 * @param deletedRows
+	 *            number of rows that have been deleted
 	 * */
-	private int calculateTowerheight(int col) {
-		for (int row = 0; row < rows; row++) {
-			if (isOccupied(row, col)) {
-				return rows - row;
+	private void lowerHeights(int deletedRows) {
+		highestTower = 0;
+		for (int col = 0; col < cols; col++) {
+			int height = heights[col] - deletedRows;
+			while (height > 0 && !isOccupied(rows - height, col)) {
+				height--;
+			}
+			heights[col] = height;
+			if (highestTower < height) {
+				highestTower = height;
 			}
 		}
-		return 0;
 	}
 
 	/**
-	 * Finds the Height of the currently highest Tower
+	 * Getter for the Height of the currently highest Tower
 	 * 
 	 * @return height of highest tower
 	 * */
-	private int getHeightOfHighestTower() {
-		int highest = 0;
-		for (int col = 0; col < cols; col++) {
-			if (highest < getTowerHeight(col)) {
-				highest = getTowerHeight(col);
-			}
-		}
-		return highest;
+	public int getHeightOfHighestTower() {
+		return highestTower;
 	}
 
 	/**
@@ -144,26 +168,37 @@ public class Wall extends Observable implements Serializable {
 	 * @return true if full, else false
 	 * */
 	private boolean isRowFull(int row) {
-		for (int col = 0; col < cols; col++) {
-			if (!isOccupied(row, col)) {
-				return false;
-			}
-		}
-		return true;
+		return rowMasks[row] == fullRow;
 	}
 
 	/**
-	 * Deletes a row from the wall and pulls down the upper rows
+	 * Deletes all rows collected in clearedRows and pulls down the upper rows. Every remaining row is moved only once;
+	 * the brick rows are swapped by reference instead of being copied.
 	 * 
-	 * @param row
-	 *            Row that has to be deleted
+	 * @param top
+	 *            highest row that contains bricks
 	 * */
-	private void deleteRow(int row) {
-		for (int helperrow = row; helperrow > rows - 1 - getHeightOfHighestTower(); helperrow--) {
-			for (int col = 0; col < cols; col++) {
-				wall[helperrow][col] = wall[helperrow - 1][col];
+	private void deleteClearedRows(int top) {
+		int next = clearedRowCount - 1; // cleared rows are sorted top to bottom
+		int target = clearedRows[next]; // rows below the lowest deleted row stay where they are
+		int moved = ((1 << (target + 1)) - 1) & ~((1 << top) - 1); // every row from top down to it
+		for (int row = target; row >= top; row--) {
+			if (next >= 0 && clearedRows[next] == row) {
+				next--;
+				continue;
 			}
+			rowMasks[target] = rowMasks[row];
+			int[] tmp = bricks[target];
+			bricks[target] = bricks[row];
+			bricks[row] = tmp;
+			target--;
 		}
+		// what is left above holds the deleted rows
+		for (int row = top; row <= target; row++) {
+			rowMasks[row] = 0;
+			Arrays.fill(bricks[row], 0);
+		}
+		markDirty(moved);
 	}
 
 	/**
@@ -175,7 +210,7 @@ public class Wall extends Observable implements Serializable {
 	 * */
 	private boolean isFull(int col) {
 		int maxTowerHeight = rows;
-		return wall[rows][col] + 1 > maxTowerHeight;
+		return heights[col] + 1 > maxTowerHeight;
 	}
 
 	/**
@@ -188,31 +223,30 @@ public class Wall extends Observable implements Serializable {
 	 * @return true if occupied, else false
 	 * */
 	private boolean isOccupied(int row, int col) {
-		return wall[row][col] != 0;
+		return (rowMasks[row] & (1 << col)) != 0;
 	}
 
 	/**
-	 * Checks if the Shape is still in the gamearea.
+	 * Checks if a candidate Shape is still in the gamearea.
 	 * 
-	 * @param tmpShape
-	 *            Shape that has to be checked
+	 * @param type
+	 *            ShapeType of the candidate
+	 * @param rotation
+	 *            normalized rotation state of the candidate
 	 * @param posX
-	 *            current position of Shape on x-axis
+	 *            position of the candidate on x-axis
 	 * @param posY
-	 *            current position of Shape on y-axis
+	 *            position of the candidate on y-axis
 	 * @return true if in game area, false else
 	 * */
-
-	private boolean inGameArea(Shape tmpShape, int posX, int posY) {
-		int shapeWidth = tmpShape.getWidth();
-		int shapeHeight = tmpShape.getHeight();
-		if (shapeWidth + posX > cols) {
+	private boolean inGameArea(ShapeType type, int rotation, int posX, int posY) {
+		if (type.getWidth(rotation) + posX > cols) {
 			return false;
 		}
 		if (posX < 0) {
 			return false;
 		}
-		if (shapeHeight + posY > rows) {
+		if (type.getHeight(rotation) + posY > rows) {
 			return false;
 		}
 		return true;
@@ -226,27 +260,22 @@ public class Wall extends Observable implements Serializable {
 	 * @return true if docked, else false
 	 * */
 	public boolean isShapeDocked(Shape shape) {
-		Boolean model[][] = shape.getModel();
-		int row = shape.getPosY();
-		int col = shape.getPosX();
-
-		for (Boolean[] arrayRow : model) {
-			for (Boolean colVal : arrayRow) {
-				if (colVal) {
-					if (wall[row + 1][col] != 0) {
-						return true;
-					}
-				}
-				col += 1;
+		int posX = shape.getPosX();
+		int posY = shape.getPosY();
+		int width = shape.getWidth();
+
+		// only the lowest brick of every column can rest on the wall
+		for (int col = 0; col < width; col++) {
+			int below = posY + shape.getBottom(col) + 1;
+			if (below >= rows || isOccupied(below, posX + col)) {
+				return true;
 			}
-			col = shape.getPosX();
-			row += 1;
 		}
 		return false;
 	}
 
 	/**
-	 * Checks if the Shape is colliding with the Wall (Edges or already�� docked Shapes)
+	 * Checks if the Shape is colliding with the Wall (Edges or already docked Shapes)
 	 * 
 	 * @param shape
 	 *            Shape that is going to be rotated
@@ -255,45 +284,181 @@ public class Wall extends Observable implements Serializable {
 	 * @return true if colliding, else false
 	 */
 	public boolean collidesWith(Shape shape, Motion motion) {
-		Shape tmpShape = shape.clone();
-
-		switch (motion) {
-		case ROTATE:
-			tmpShape.rotate();
-			break;
-		case LEFT:
-			tmpShape.moveLeft();
-			break;
-		case RIGHT:
-			tmpShape.moveRight();
-			break;
-		case DOWN:
-			tmpShape.update();
-			break;
-		}
-
-		Boolean[][] tmpModel = tmpShape.getModel();
-		int tmpX = tmpShape.getPosX();
-		int tmpY = tmpShape.getPosY();
-		int tmpHeight = tmpShape.getHeight();
-		int tmpWidth = tmpShape.getWidth();
+		ShapeType type = shape.getShapeType();
+		int rotation = type.normalizeRotation(shape.getRotation() + motion.getDeltaRotation());
+		return collidesWith(type, rotation, shape.getPosX() + motion.getDeltaX(), shape.getPosY() + motion.getDeltaY());
+	}
 
-		if (!inGameArea(tmpShape, tmpX, tmpY)) {
+	/**
+	 * Checks if a candidate Shape would collide with the Wall (Edges or already docked Shapes). Works on the row
+	 * masks only, so nothing is allocated.
+	 * 
+	 * @param type
+	 *            ShapeType of the candidate
+	 * @param rotation
+	 *            normalized rotation state of the candidate
+	 * @param posX
+	 *            position of the candidate on x-axis
+	 * @param posY
+	 *            position of the candidate on y-axis
+	 * @return true if colliding, else false
+	 */
+	public boolean collidesWith(ShapeType type, int rotation, int posX, int posY) {
+		if (!inGameArea(type, rotation, posX, posY)) {
 			return true;
 		}
 
-		for (int row = 0; row < tmpHeight; row++) {
-			for (int col = 0; col < tmpWidth; col++) {
-				if (tmpModel[row][col]) {
-					if (isOccupied(row + tmpY, col + tmpX)) {
-						return true;
-					}
-				}
+		int height = type.getHeight(rotation);
+		for (int row = 0; row < height; row++) {
+			if ((rowMasks[row + posY] & (type.getRowMask(rotation, row) << posX)) != 0) {
+				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Puts a single brick into the Wall, e.g. when a Wall is rebuilt from a message
+	 * 
+	 * @param row
+	 *            Row of the brick
+	 * @param col
+	 *            Column of the brick
+	 * @param bitmapId
+	 *            bitmap id of the brick (1...7)
+	 * */
+	public void setBrick(int row, int col, int bitmapId) {
+		rowMasks[row] |= 1 << col;
+		bricks[row][col] = bitmapId;
+		markDirty(1 << row);
+		raiseHeight(col, rows - row);
+	}
+
+	/**
+	 * Applies the changes of a docking on another device. The delta only fits if it directly follows the version of
+	 * this Wall, otherwise nothing is changed.
+	 * 
+	 * @param delta
+	 *            changes of one docking
+	 * @return true if applied, false if the versions have drifted apart and the whole Wall is needed
+	 * */
+	public boolean applyDelta(WallDelta delta) {
+		if (delta.getVersion() != version + 1) {
+			return false;
+		}
+		for (int i = 0; i < delta.getLockedCellCount(); i++) {
+			int cell = delta.getLockedCell(i);
+			setBrick(cell / cols, cell % cols, delta.getBitmapId());
+		}
+		clearedRowCount = delta.getClearedRowCount();
+		for (int i = 0; i < clearedRowCount; i++) {
+			clearedRows[i] = delta.getClearedRow(i);
+		}
+		if (clearedRowCount > 0) {
+			deleteClearedRows(rows - highestTower);
+			lowerHeights(clearedRowCount);
+		}
+		version = delta.getVersion();
+		return true;
+	}
+
+	/**
+	 * Getter for the version, which counts the completed dockings
+	 * 
+	 * @return version
+	 * */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Setter for the version, e.g. when a Wall is rebuilt from a message
+	 * 
+	 * @param version
+	 *            number of completed dockings
+	 * */
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * Getter for the number of bricks put in by the last call of putShapeIntoWall()
+	 * 
+	 * @return number of locked cells
+	 * */
+	public int getLockedCellCount() {
+		return lockedCellCount;
+	}
+
+	/**
+	 * Getter for a brick put in by the last call of putShapeIntoWall(). Indices refer to the wall before full rows were
+	 * deleted.
+	 * 
+	 * @param i
+	 *            index between 0 and getLockedCellCount() - 1
+	 * @return brick as row * GameState.COLS + col
+	 * */
+	public int getLockedCell(int i) {
+		return lockedCells[i];
+	}
+
+	/**
+	 * Getter for the bitmap id of the Shape put in by the last call of putShapeIntoWall()
+	 * 
+	 * @return bitmap id
+	 * */
+	public int getLockedBitmapId() {
+		return lockedBitmapId;
+	}
+
+	/**
+	 * Getter for the number of rows deleted by the last call of checkRows()
+	 * 
+	 * @return number of deleted rows
+	 * */
+	public int getClearedRowCount() {
+		return clearedRowCount;
+	}
+
+	/**
+	 * Getter for a row deleted by the last call of checkRows(). Indices refer to the wall before the rows were deleted
+	 * and are sorted top to bottom.
+	 * 
+	 * @param i
+	 *            index between 0 and getClearedRowCount() - 1
+	 * @return deleted row
+	 * */
+	public int getClearedRow(int i) {
+		return clearedRows[i];
+	}
+
+	/**
+	 * Returns the rows that have changed since the last call and starts collecting anew. Lets a renderer cache the
+	 * Wall and redraw only these rows. A new Wall returns all rows.
+	 * 
+	 * Wall messages change the Wall on another thread than the one drawing it, so a row must not get lost between
+	 * reading and clearing the mask. Rows are marked after they have been changed: a row drawn while it changes is
+	 * drawn again with the next frame.
+	 * 
+	 * @return mask with bit row set if the row has changed
+	 * */
+	public int takeDirtyRows() {
+		return dirtyRows.getAndSet(0);
+	}
+
+	/**
+	 * Adds rows to the mask of changed rows
+	 * 
+	 * @param mask
+	 *            bit row set for every changed row
+	 * */
+	private void markDirty(int mask) {
+		int current;
+		do {
+			current = dirtyRows.get();
+		} while (!dirtyRows.compareAndSet(current, current | mask));
+	}
+
 	/**
 	 * Getter for towerheight of a specific column
 	 * 
@@ -302,35 +467,31 @@ public class Wall extends Observable implements Serializable {
 	 * @return height of the column col
 	 * */
 	public int getTowerHeight(int col) {
-		return wall[rows][col];
+		return heights[col];
 	}
 
 	/**
-	 * Getter for wall array
+	 * Getter for the occupancy mask of a row
+	 * 
+	 * @param row
+	 *            Row that you want the mask of
+	 * @return mask with bit col set if the brick in column col is occupied
 	 * */
-	public int[][] getWall() {
-		return wall;
+	public int getRowMask(int row) {
+		return rowMasks[row];
 	}
 
 	/**
-	 * Draws the Wall onto the Canvas
-	 * 
-	 * @param canvas
-	 *            Canvas the Wall has to be drawn on
-	 * @param bitmaps
-	 *            The bitmaps that exist
-	 * @param bricksize
-	 *            edge length of a box
+	 * Getter for the bitmap id of a brick
 	 * 
+	 * @param row
+	 *            Row of the brick
+	 * @param col
+	 *            Column of the brick
+	 * @return bitmap id of the brick, 0 if empty
 	 * */
-	public void draw(Canvas canvas, Bitmap[] bitmaps, int top, int left, int bricksize) {
-		int id;
-		for (int row = 0; row < rows; row++) {
-			for (int col = 0; col < cols; col++) {
-				id = wall[row][col];
-				canvas.drawBitmap(bitmaps[id], left + col * bricksize, top + row * bricksize, null);
-			}
-		}
+	public int getBrick(int row, int col) {
+		return bricks[row][col];
 	}
 
 	/**
@@ -344,12 +505,13 @@ public class Wall extends Observable implements Serializable {
 	}
 
 	/**
-	 * Notifies its Observers after a Shape has docked
+	 * Notifies its Observers after a Shape has docked and starts a new version
 	 * 
 	 * @param pId
 	 *            ID of the player whose Shape has docked
 	 * */
 	public void onDockingCompleted(String pId) {
+		version++;
 		notifyyy(pId);
 	}
 
@@ -0,0 +1,98 @@
+package de.medieninf.mobcomp.multris.game.data;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         The changes of a Wall caused by one docking: the bricks of the docked Shape and the rows that have been
+ *         deleted afterwards. A client applies it to its own Wall instead of receiving the whole Wall.
+ * */
+public class WallDelta {
+
+	private int version;
+	private int bitmapId;
+	private int[] lockedCells;
+	private int[] clearedRows;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param version
+	 *            version of the Wall after the docking
+	 * @param bitmapId
+	 *            bitmap id of the docked Shape
+	 * @param lockedCells
+	 *            bricks of the docked Shape, each as row * GameState.COLS + col
+	 * @param clearedRows
+	 *            rows deleted after the docking, top to bottom
+	 * */
+	public WallDelta(int version, int bitmapId, int[] lockedCells, int[] clearedRows) {
+		this.version = version;
+		this.bitmapId = bitmapId;
+		this.lockedCells = lockedCells;
+		this.clearedRows = clearedRows;
+	}
+
+	/**
+	 * Getter for version
+	 * 
+	 * @return version of the Wall after the docking
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Getter for bitmapId
+	 * 
+	 * @return bitmap id of the docked Shape
+	 */
+	public int getBitmapId() {
+		return bitmapId;
+	}
+
+	/**
+	 * Getter for the number of locked cells
+	 * 
+	 * @return number of bricks of the docked Shape
+	 */
+	public int getLockedCellCount() {
+		return lockedCells.length;
+	}
+
+	/**
+	 * Getter for a locked cell
+	 * 
+	 * @param i
+	 *            index between 0 and getLockedCellCount() - 1
+	 * @return brick as row * GameState.COLS + col
+	 */
+	public int getLockedCell(int i) {
+		return lockedCells[i];
+	}
+
+	/**
+	 * Getter for the number of deleted rows
+	 * 
+	 * @return number of deleted rows
+	 */
+	public int getClearedRowCount() {
+		return clearedRows.length;
+	}
+
+	/**
+	 * Getter for a deleted row
+	 * 
+	 * @param i
+	 *            index between 0 and getClearedRowCount() - 1
+	 * @return deleted row
+	 */
+	public int getClearedRow(int i) {
+		return clearedRows[i];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("WallDelta: version: %d, cells: %d, cleared rows: %d", version, lockedCells.length, clearedRows.length);
+	}
+}
@@ -0,0 +1,9 @@
+package de.medieninf.mobcomp.multris.game.enums;
+
+/** Enum for the different ways a ShapeGenerator can draw the next ShapeType */
+public enum GeneratorMode {
+	/** every ShapeType is drawn independently with the same probability */
+	RANDOM,
+	/** all seven ShapeTypes are shuffled into a bag that is emptied before the next one is shuffled */
+	BAG
+}
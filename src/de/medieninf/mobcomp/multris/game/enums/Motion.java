@@ -2,5 +2,46 @@ package de.medieninf.mobcomp.multris.game.enums;
 
 /** Enum for the different Motions a Tetris Shape can "make" */
 public enum Motion {
-	LEFT, RIGHT, ROTATE, DOWN
+	LEFT(-1, 0, 0), RIGHT(1, 0, 0), ROTATE(0, 0, 1), DOWN(0, 1, 0);
+
+	private final int deltaX;
+	private final int deltaY;
+	private final int deltaRotation;
+
+	/**
+	 * Private Constructor
+	 * 
+	 * @param deltaX
+	 *            change of the position on x-axis
+	 * @param deltaY
+	 *            change of the position on y-axis
+	 * @param deltaRotation
+	 *            change of the rotation state
+	 */
+	private Motion(int deltaX, int deltaY, int deltaRotation) {
+		this.deltaX = deltaX;
+		this.deltaY = deltaY;
+		this.deltaRotation = deltaRotation;
+	}
+
+	/**
+	 * @return change of the position on x-axis
+	 */
+	public int getDeltaX() {
+		return deltaX;
+	}
+
+	/**
+	 * @return change of the position on y-axis
+	 */
+	public int getDeltaY() {
+		return deltaY;
+	}
+
+	/**
+	 * @return change of the rotation state
+	 */
+	public int getDeltaRotation() {
+		return deltaRotation;
+	}
 }
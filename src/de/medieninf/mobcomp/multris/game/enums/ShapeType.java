@@ -1,19 +1,31 @@
 package de.medieninf.mobcomp.multris.game.enums;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Random;
 
 /**
  * @author tina schedlbauer
  * 
  *         This enum contains all the ShapeType logic. It is very mighty!
+ * 
+ *         Every rotation state of a ShapeType is stored as a packed mask with bit (row * MODEL_SIZE + col) set if the
+ *         model is occupied in row/col, together with its width, height and bottom profile.
  * */
 public enum ShapeType implements Serializable {
 	O_SHAPE(1), T_SHAPE(2), I_SHAPE(3), J_SHAPE(4), L_SHAPE(5), S_SHAPE(6), Z_SHAPE(7);
 
+	/** edge length of the box every model fits in */
+	public static final int MODEL_SIZE = 4;
+	private static final int ROW_MASK = (1 << MODEL_SIZE) - 1;
+	private static final Random RANDOM = new Random();
+	private static final ShapeType[] TYPES = values();
+
 	private final int id;
-	private ArrayList<Boolean[][]> models;
+	private int rotations;
+	private int[] masks;
+	private int[] widths;
+	private int[] heights;
+	private int[][] bottoms;
 
 	/**
 	 * Constructor that initializes the models of the ShapeType
@@ -23,52 +35,78 @@ public enum ShapeType implements Serializable {
 	 */
 	ShapeType(int id) {
 		this.id = id;
-		this.models = new ArrayList<Boolean[][]>();
+		this.rotations = 0;
+		this.masks = new int[MODEL_SIZE];
+		this.widths = new int[MODEL_SIZE];
+		this.heights = new int[MODEL_SIZE];
+		this.bottoms = new int[MODEL_SIZE][MODEL_SIZE];
 		initModels();
 	}
 
 	/**
-	 * Initializes the different models of the ShapeType and adds them to the models-List. This method is called in the
+	 * Initializes the different models of the ShapeType and adds them as packed masks. This method is called in the
 	 * constructor.
 	 * */
 	private void initModels() {
 		switch (id) {
 		case 1:
-			models.add(new Boolean[][] { { true, true }, { true, true } });
+			addModel(new boolean[][] { { true, true }, { true, true } });
 			break;
 		case 2:
-			models.add(new Boolean[][] { { true, false }, { true, true }, { true, false } });
-			models.add(new Boolean[][] { { true, true, true }, { false, true, false } });
-			models.add(new Boolean[][] { { false, true }, { true, true }, { false, true } });
-			models.add(new Boolean[][] { { false, true, false }, { true, true, true } });
+			addModel(new boolean[][] { { true, false }, { true, true }, { true, false } });
+			addModel(new boolean[][] { { true, true, true }, { false, true, false } });
+			addModel(new boolean[][] { { false, true }, { true, true }, { false, true } });
+			addModel(new boolean[][] { { false, true, false }, { true, true, true } });
 			break;
 		case 3:
-			models.add(new Boolean[][] { { true, true, true, true } });
-			models.add(new Boolean[][] { { true }, { true }, { true }, { true } });
+			addModel(new boolean[][] { { true, true, true, true } });
+			addModel(new boolean[][] { { true }, { true }, { true }, { true } });
 			break;
 		case 4:
-			models.add(new Boolean[][] { { true, true, true }, { false, false, true } });
-			models.add(new Boolean[][] { { false, true }, { false, true }, { true, true } });
-			models.add(new Boolean[][] { { true, false, false }, { true, true, true } });
-			models.add(new Boolean[][] { { true, true }, { true, false }, { true, false } });
+			addModel(new boolean[][] { { true, true, true }, { false, false, true } });
+			addModel(new boolean[][] { { false, true }, { false, true }, { true, true } });
+			addModel(new boolean[][] { { true, false, false }, { true, true, true } });
+			addModel(new boolean[][] { { true, true }, { true, false }, { true, false } });
 			break;
 		case 5:
-			models.add(new Boolean[][] { { true, true, true }, { true, false, false } });
-			models.add(new Boolean[][] { { true, true }, { false, true }, { false, true } });
-			models.add(new Boolean[][] { { false, false, true }, { true, true, true } });
-			models.add(new Boolean[][] { { true, false }, { true, false }, { true, true } });
+			addModel(new boolean[][] { { true, true, true }, { true, false, false } });
+			addModel(new boolean[][] { { true, true }, { false, true }, { false, true } });
+			addModel(new boolean[][] { { false, false, true }, { true, true, true } });
+			addModel(new boolean[][] { { true, false }, { true, false }, { true, true } });
 			break;
 		case 6:
-			models.add(new Boolean[][] { { false, true, true }, { true, true, false } });
-			models.add(new Boolean[][] { { true, false }, { true, true }, { false, true } });
+			addModel(new boolean[][] { { false, true, true }, { true, true, false } });
+			addModel(new boolean[][] { { true, false }, { true, true }, { false, true } });
 			break;
 		case 7:
-			models.add(new Boolean[][] { { true, true, false }, { false, true, true } });
-			models.add(new Boolean[][] { { false, true }, { true, true }, { true, false } });
+			addModel(new boolean[][] { { true, true, false }, { false, true, true } });
+			addModel(new boolean[][] { { false, true }, { true, true }, { true, false } });
 			break;
 		}
 	}
 
+	/**
+	 * Packs a model into a mask and stores it together with its measures as the next rotation state
+	 * 
+	 * @param model
+	 *            model of the rotation state
+	 */
+	private void addModel(boolean[][] model) {
+		int mask = 0;
+		for (int row = 0; row < model.length; row++) {
+			for (int col = 0; col < model[row].length; col++) {
+				if (model[row][col]) {
+					mask |= 1 << (row * MODEL_SIZE + col);
+					bottoms[rotations][col] = row;
+				}
+			}
+		}
+		masks[rotations] = mask;
+		heights[rotations] = model.length;
+		widths[rotations] = model[0].length;
+		rotations++;
+	}
+
 	/**
 	 * Getter for id
 	 * 
@@ -79,25 +117,91 @@ public enum ShapeType implements Serializable {
 	}
 
 	/**
-	 * Generates a random ShapeType
+	 * Generates a random ShapeType. The sequence can not be reproduced, use a ShapeGenerator for that.
 	 * 
 	 * @return ShapeType with value of random no
 	 */
 	public static ShapeType getRandom() {
-		Random r = new Random();
-		int i = r.nextInt(ShapeType.values().length);
-		return ShapeType.values()[i];
+		return TYPES[RANDOM.nextInt(TYPES.length)];
+	}
+
+	/**
+	 * Getter for the number of different rotation states
+	 * 
+	 * @return number of rotation states
+	 */
+	public int getRotations() {
+		return rotations;
+	}
+
+	/**
+	 * Maps any rotation onto one of the existing rotation states
+	 * 
+	 * @param rotation
+	 *            rotation that might be out of range
+	 * @return rotation state between 0 and getRotations() - 1
+	 */
+	public int normalizeRotation(int rotation) {
+		return rotation % rotations;
+	}
+
+	/**
+	 * Getter for the packed model with a specific rotation state
+	 * 
+	 * @param rotation
+	 *            normalized rotation state
+	 * @return mask with bit (row * MODEL_SIZE + col) set if occupied
+	 */
+	public int getMask(int rotation) {
+		return masks[rotation];
+	}
+
+	/**
+	 * Getter for one row of the model with a specific rotation state
+	 * 
+	 * @param rotation
+	 *            normalized rotation state
+	 * @param row
+	 *            row of the model
+	 * @return mask with bit col set if occupied
+	 */
+	public int getRowMask(int rotation, int row) {
+		return (masks[rotation] >>> (row * MODEL_SIZE)) & ROW_MASK;
+	}
+
+	/**
+	 * Getter for the width of the model with a specific rotation state
+	 * 
+	 * @param rotation
+	 *            normalized rotation state
+	 * @return number of cols
+	 */
+	public int getWidth(int rotation) {
+		return widths[rotation];
+	}
+
+	/**
+	 * Getter for the height of the model with a specific rotation state
+	 * 
+	 * @param rotation
+	 *            normalized rotation state
+	 * @return number of rows
+	 */
+	public int getHeight(int rotation) {
+		return heights[rotation];
 	}
 
 	/**
-	 * Getter for the ShapeType model with a specific rotatio state
+	 * Getter for the bottom profile of the model with a specific rotation state
 	 * 
 	 * @param rotation
-	 *            model state that is wanted
-	 * @return model of the ShapeType according to rotation
+	 *            normalized rotation state
+	 * @param col
+	 *            column of the model
+	 * @return lowest occupied row of the column
 	 */
-	public Boolean[][] getModel(int rotation) {
-		return models.get(rotation % models.size());
+	public int getBottom(int rotation, int col) {
+		return bottoms[rotation][col];
 	}
 
 }
@@ -0,0 +1,73 @@
+package de.medieninf.mobcomp.multris.game.lockstep;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         The inputs of one player for a row of consecutive ticks. This is all a device sends in lockstep mode.
+ * */
+public class InputBatch {
+
+	private int playerNo;
+	private int firstTick;
+	private byte[] inputs;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param playerNo
+	 *            number of the player the inputs belong to
+	 * @param firstTick
+	 *            tick of the first input
+	 * @param inputs
+	 *            one input per tick, see InputBuffer for the bits
+	 * */
+	public InputBatch(int playerNo, int firstTick, byte[] inputs) {
+		this.playerNo = playerNo;
+		this.firstTick = firstTick;
+		this.inputs = inputs;
+	}
+
+	/**
+	 * Getter for playerNo
+	 * 
+	 * @return number of the player the inputs belong to
+	 */
+	public int getPlayerNo() {
+		return playerNo;
+	}
+
+	/**
+	 * Getter for firstTick
+	 * 
+	 * @return tick of the first input
+	 */
+	public int getFirstTick() {
+		return firstTick;
+	}
+
+	/**
+	 * Getter for the number of inputs
+	 * 
+	 * @return number of ticks in this batch
+	 */
+	public int getCount() {
+		return inputs.length;
+	}
+
+	/**
+	 * Getter for one input
+	 * 
+	 * @param i
+	 *            index of the input, the tick is firstTick + i
+	 * @return input bits
+	 */
+	public byte getInput(int i) {
+		return inputs[i];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("InputBatch: player: %d, ticks: %d..%d", playerNo, firstTick, firstTick + inputs.length - 1);
+	}
+}
@@ -0,0 +1,142 @@
+package de.medieninf.mobcomp.multris.game.lockstep;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         Stores the inputs of all players for the ticks that are not simulated yet. Every input is a set of bits, one
+ *         per touch event. A tick can only be simulated when the inputs of all players for it have arrived.
+ * 
+ *         The first delay ticks have no inputs, so every device can start simulating at once while the inputs it
+ *         schedules for later ticks are on their way.
+ * 
+ *         The buffer is only used by the game thread: received batches are queued by GameState.setIncomingData() and put
+ *         in when tick() handles the queue, right before the tick is simulated. An input that leaves a gap or does not
+ *         fit into the buffer is rejected instead of ending the game loop: the game then stands still at the missing
+ *         tick, just like it does while an input is late.
+ * */
+public class InputBuffer {
+
+	public static final int LEFT = 1;
+	public static final int RIGHT = 1 << 1;
+	public static final int ROTATE = 1 << 2;
+	public static final int SPEED_UP = 1 << 3;
+	public static final int SLOW_DOWN = 1 << 4;
+
+	public static final int CAPACITY = 256; // ticks that can be stored per player
+
+	private byte[][] inputs; // player -> input, indexed by tick % CAPACITY
+	private int[] received; // player -> first tick whose input is missing
+	private int consumed; // every tick before has been simulated
+	private int rejected; // inputs that have been rejected by put()
+
+	/**
+	 * Constructor
+	 * 
+	 * @param playerCount
+	 *            number of players
+	 * @param delay
+	 *            number of ticks an input is scheduled ahead
+	 * */
+	public InputBuffer(int playerCount, int delay) {
+		if (delay >= CAPACITY) {
+			throw new RuntimeException("Input delay " + delay + " does not fit into " + CAPACITY + " ticks");
+		}
+		inputs = new byte[playerCount][CAPACITY];
+		received = new int[playerCount];
+		for (int p = 0; p < playerCount; p++) {
+			received[p] = delay;
+		}
+	}
+
+	/**
+	 * Stores the input of a player. Inputs have to arrive in order of their ticks, ticks that are already known are
+	 * ignored. An input is rejected if the input of an earlier tick is missing or if it is too far ahead of the
+	 * simulation to be stored.
+	 * 
+	 * @param playerNo
+	 *            number of the player
+	 * @param tick
+	 *            tick the input belongs to
+	 * @param input
+	 *            input bits
+	 * @return false if the input has been rejected, else true
+	 * */
+	public boolean put(int playerNo, int tick, byte input) {
+		if (tick < received[playerNo]) {
+			return true;
+		}
+		if (tick > received[playerNo] || tick - consumed >= CAPACITY) {
+			rejected++;
+			return false;
+		}
+		inputs[playerNo][tick % CAPACITY] = input;
+		received[playerNo] = tick + 1;
+		return true;
+	}
+
+	/**
+	 * Stores all inputs of a batch. Stops at the first input that is rejected, the rest of the batch would leave a gap
+	 * as well
+	 * 
+	 * @param batch
+	 *            inputs of one player
+	 * @return false if inputs of the batch have been rejected, else true
+	 * */
+	public boolean put(InputBatch batch) {
+		for (int i = 0; i < batch.getCount(); i++) {
+			if (!put(batch.getPlayerNo(), batch.getFirstTick() + i, batch.getInput(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the inputs of all players for a tick have arrived
+	 * 
+	 * @param tick
+	 *            tick to be simulated
+	 * @return true if complete, else false
+	 * */
+	public boolean isComplete(int tick) {
+		for (int p = 0; p < received.length; p++) {
+			if (received[p] <= tick) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Getter for the input of a player
+	 * 
+	 * @param playerNo
+	 *            number of the player
+	 * @param tick
+	 *            tick that is simulated, must be complete
+	 * @return input bits
+	 * */
+	public int get(int playerNo, int tick) {
+		return inputs[playerNo][tick % CAPACITY];
+	}
+
+	/**
+	 * Releases all inputs before a tick, their slots can be used again
+	 * 
+	 * @param tick
+	 *            first tick that is not simulated yet
+	 * */
+	public void consumedUntil(int tick) {
+		consumed = tick;
+	}
+
+	/**
+	 * Getter for the number of rejected inputs
+	 * 
+	 * @return inputs rejected by put()
+	 * */
+	public int getRejected() {
+		return rejected;
+	}
+}
@@ -0,0 +1,21 @@
+package de.medieninf.mobcomp.multris.game.simulation;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Replaces the TetrisView as source of user input when a GameState is driven by the Simulator.
+ * */
+public interface InputSource {
+
+	/**
+	 * Registers the input for the next tick on the GameState
+	 * 
+	 * @param gameState
+	 *            GameState the input is registered on
+	 * @param tick
+	 *            number of the next tick in the current game
+	 * */
+	void registerInput(GameState gameState, int tick);
+}
@@ -0,0 +1,48 @@
+package de.medieninf.mobcomp.multris.game.simulation;
+
+import java.util.Random;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         InputSource that registers a random input on every tick. Most ticks stay without input, like a real player.
+ * */
+public class RandomInputSource implements InputSource {
+
+	private static final int CHOICES = 10; // 5 inputs, the rest means no input
+
+	private Random random;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param seed
+	 *            seed of the random inputs
+	 * */
+	public RandomInputSource(long seed) {
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public void registerInput(GameState gameState, int tick) {
+		switch (random.nextInt(CHOICES)) {
+		case 0:
+			gameState.registerMoveLeft();
+			break;
+		case 1:
+			gameState.registerMoveRight();
+			break;
+		case 2:
+			gameState.registerRotate();
+			break;
+		case 3:
+			gameState.registerSpeedUp();
+			break;
+		case 4:
+			gameState.registerSlowDown();
+			break;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package de.medieninf.mobcomp.multris.game.simulation;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         InputSource that replays a script, one character per tick. The script is repeated when it is finished.
+ * 
+ *         <pre>
+ * L  move left
+ * R  move right
+ * U  rotate
+ * D  speed up
+ * S  slow down
+ * .  no input
+ * </pre>
+ * */
+public class ScriptedInputSource implements InputSource {
+
+	private final String script;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param script
+	 *            inputs, one character per tick
+	 * */
+	public ScriptedInputSource(String script) {
+		if (script.length() == 0) {
+			throw new IllegalArgumentException("Script must not be empty");
+		}
+		this.script = script;
+	}
+
+	@Override
+	public void registerInput(GameState gameState, int tick) {
+		switch (script.charAt(tick % script.length())) {
+		case 'L':
+			gameState.registerMoveLeft();
+			break;
+		case 'R':
+			gameState.registerMoveRight();
+			break;
+		case 'U':
+			gameState.registerRotate();
+			break;
+		case 'D':
+			gameState.registerSpeedUp();
+			break;
+		case 'S':
+			gameState.registerSlowDown();
+			break;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package de.medieninf.mobcomp.multris.game.simulation;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Sums up the results of a Simulator run.
+ * */
+public class SimulationReport {
+
+	int games;
+	long ticks;
+	long dockedShapes;
+	long rows;
+	long points;
+	long nanos;
+
+	public int getGames() {
+		return games;
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Getter for the number of pieces locked into the Wall
+	 * 
+	 * @return docked Shapes of all games
+	 */
+	public long getDockedShapes() {
+		return dockedShapes;
+	}
+
+	/**
+	 * Getter for the number of lines cleared
+	 * 
+	 * @return deleted rows of all games
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	public long getPoints() {
+		return points;
+	}
+
+	/**
+	 * Getter for the wall-clock time the simulation took
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	public double getTicksPerSecond() {
+		return nanos == 0 ? 0 : ticks * 1e9 / nanos;
+	}
+
+	public double getGamesPerSecond() {
+		return nanos == 0 ? 0 : games * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("games: %d, ticks: %d, docked shapes: %d, rows: %d, points: %d, time: %.1f ms, %.0f ticks/s, %.1f games/s",
+				games, ticks, dockedShapes, rows, points, nanos / 1e6, getTicksPerSecond(), getGamesPerSecond());
+	}
+}
@@ -0,0 +1,88 @@
+package de.medieninf.mobcomp.multris.game.simulation;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.ShapeGenerator;
+import de.medieninf.mobcomp.multris.game.enums.GeneratorMode;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Headless driver for the GameState. Runs singleplayer games as fast as possible, without GameThread, render
+ *         surface or sleeping, and takes the user input from an InputSource. Used for capacity planning and to spot
+ *         performance regressions. The ShapeTypes of game n are generated from seed + n, so a run with the same seed
+ *         and a deterministic InputSource can be reproduced.
+ * 
+ *         <pre>
+ * java de.medieninf.mobcomp.multris.game.simulation.Simulator [games] [max ticks per game] [random|script] [seed] [RANDOM|BAG]
+ * </pre>
+ * */
+public class Simulator {
+
+	private InputSource inputSource;
+	private long seed;
+	private GeneratorMode mode;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param inputSource
+	 *            source of the user input of all games
+	 * @param seed
+	 *            seed of the ShapeTypes of the first game
+	 * @param mode
+	 *            how the ShapeTypes are drawn
+	 * */
+	public Simulator(InputSource inputSource, long seed, GeneratorMode mode) {
+		this.inputSource = inputSource;
+		this.seed = seed;
+		this.mode = mode;
+	}
+
+	/**
+	 * Runs games one after another until each of them is game over or has reached maxTicks
+	 * 
+	 * @param games
+	 *            number of games
+	 * @param maxTicks
+	 *            maximum number of ticks of a single game
+	 * @return report of all games
+	 * */
+	public SimulationReport run(int games, int maxTicks) {
+		SimulationReport report = new SimulationReport();
+		long start = System.nanoTime();
+		for (int game = 0; game < games; game++) {
+			GameState gameState = new GameState(true, false, 0, 1, new ShapeGenerator(seed + game, mode));
+			int tick = 0;
+			while (!gameState.getGameOver() && tick < maxTicks) {
+				inputSource.registerInput(gameState, tick);
+				gameState.tick();
+				tick++;
+			}
+			report.games++;
+			report.ticks += tick;
+			report.dockedShapes += gameState.getDockedShapes();
+			report.rows += gameState.getRows();
+			report.points += gameState.getPoints();
+		}
+		report.nanos = System.nanoTime() - start;
+		return report;
+	}
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int maxTicks = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		String input = args.length > 2 ? args[2] : "random";
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+		GeneratorMode mode = args.length > 4 ? GeneratorMode.valueOf(args[4]) : GeneratorMode.BAG;
+
+		InputSource inputSource;
+		if (input.equals("random")) {
+			inputSource = new RandomInputSource(seed);
+		} else {
+			inputSource = new ScriptedInputSource(input);
+		}
+		// warm up, so the JIT has compiled the hot paths before measuring
+		new Simulator(inputSource, seed, mode).run(Math.max(1, games / 10), maxTicks);
+		System.out.println(new Simulator(inputSource, seed, mode).run(games, maxTicks));
+	}
+}
@@ -1,18 +1,16 @@
 package de.medieninf.mobcomp.multris.network;
 
-import java.io.Serializable;
-
 import de.medieninf.mobcomp.multris.game.data.Shape;
 import de.medieninf.mobcomp.multris.game.data.Wall;
+import de.medieninf.mobcomp.multris.game.data.WallDelta;
+import de.medieninf.mobcomp.multris.game.lockstep.InputBatch;
 
 /**
  * @author marcel bechtold
  * 
  *         This Class stores Tetris information for Bluetooth Communication
  * */
-public class BTMessage implements Serializable {
-
-	private static final long serialVersionUID = -4519851900116011454L;
+public class BTMessage {
 
 	public static final int SHAPE = 0;
 	public static final int WALL = 1;
@@ -21,6 +19,10 @@ public class BTMessage implements Serializable {
 	public static final int START_GAME = 4;
 	public static final int PAUSE_GAME = 5;
 	public static final int RESUME_GAME = 6;
+	public static final int INPUT = 7;
+	public static final int WALL_DELTA = 8;
+	public static final int WALL_REQUEST = 9;
+	public static final int MESSAGE_TYPES = 10; // number of message ids
 
 	private String pID;
 	private int mID;
@@ -57,6 +59,36 @@ public class BTMessage implements Serializable {
 
 	}
 
+	/**
+	 * Constructor for a BTMessage that stores the changes of a Wall
+	 * 
+	 * @param mID
+	 *            message Id
+	 * @param pID
+	 *            player Id
+	 * @param delta
+	 * */
+	public BTMessage(int mID, String pID, WallDelta delta) {
+		this.pID = pID;
+		this.mID = mID;
+		this.data = delta;
+	}
+
+	/**
+	 * Constructor for a BTMessage that stores the inputs of a player in lockstep mode
+	 * 
+	 * @param mID
+	 *            message Id
+	 * @param pID
+	 *            player Id
+	 * @param batch
+	 * */
+	public BTMessage(int mID, String pID, InputBatch batch) {
+		this.pID = pID;
+		this.mID = mID;
+		this.data = batch;
+	}
+
 	/**
 	 * Constructor for a BTMessage that stores a gameOver info
 	 * 
@@ -1,57 +1,166 @@
 package de.medieninf.mobcomp.multris.network;
 
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import android.util.Log;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * @author marcel bechtold
+ * 
+ *         Pool of byte arrays that can be used by several threads. Arrays are sorted into size classes of powers of
+ *         two, so a leased array is usually longer than requested and callers have to keep the length of their data
+ *         themselves. Every class keeps at most a fixed number of free arrays, the free lists are slots that are taken
+ *         and filled by compare-and-set, so no thread ever waits for a lock. Arrays larger than the biggest class are
+ *         not pooled at all.
+ * */
 public class ByteBufferPool {
 
-	private Map<Integer, ArrayList<byte[]>> pool;
-	int leasedSize;
-	int internalSize;
+	public static final int MIN_CLASS_BITS = 4; // smallest class: 16 bytes
+	public static final int MAX_CLASS_BITS = 16; // biggest class: 64 KiB
+	public static final int DEFAULT_ARRAYS_PER_CLASS = 16;
+
+	private AtomicReferenceArray<byte[]>[] freeLists; // size class -> free arrays, null if empty slot
 
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong discarded = new AtomicLong(); // recycled, but not kept
+	private AtomicLong bytesRetained = new AtomicLong();
+
+	/**
+	 * Constructor with DEFAULT_ARRAYS_PER_CLASS free arrays per size class
+	 * */
 	public ByteBufferPool() {
-		pool = new ConcurrentHashMap<Integer, ArrayList<byte[]>>();
-		leasedSize = 0;
-		internalSize = 0;
-	}
-
-	public byte[] get(Integer size) {
-		logMemoryUsed();
-		this.leasedSize += size;
-		if (pool.containsKey(size)) {
-			ArrayList<byte[]> bytes = pool.get(size);
-			synchronized (bytes) {
-				if (!bytes.isEmpty()) {
-					byte[] ret = bytes.remove(0);
-					this.internalSize -= size;
-					return ret;
-				}
+		this(DEFAULT_ARRAYS_PER_CLASS);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param arraysPerClass
+	 *            maximum number of free arrays kept per size class
+	 * */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ByteBufferPool(int arraysPerClass) {
+		freeLists = new AtomicReferenceArray[MAX_CLASS_BITS - MIN_CLASS_BITS + 1];
+		for (int i = 0; i < freeLists.length; i++) {
+			freeLists[i] = new AtomicReferenceArray<byte[]>(arraysPerClass);
+		}
+	}
+
+	/**
+	 * Leases an array that can hold at least size bytes
+	 * 
+	 * @param size
+	 *            number of bytes needed
+	 * @return array of the size class of size, or exactly size bytes if it is too large for the pool
+	 * */
+	public byte[] get(int size) {
+		int sizeClass = sizeClassOf(size);
+		if (sizeClass < 0) {
+			misses.incrementAndGet();
+			return new byte[size];
+		}
+		AtomicReferenceArray<byte[]> freeList = freeLists[sizeClass];
+		for (int i = 0; i < freeList.length(); i++) {
+			byte[] buffer = freeList.getAndSet(i, null);
+			if (buffer != null) {
+				hits.incrementAndGet();
+				bytesRetained.addAndGet(-buffer.length);
+				return buffer;
 			}
 		}
-		return new byte[size];
+		misses.incrementAndGet();
+		return new byte[1 << (sizeClass + MIN_CLASS_BITS)];
 	}
 
+	/**
+	 * Gives an array back to the pool. It is only kept if it has the length of a size class and the free list of that
+	 * class is not full. The caller must not use the array afterwards.
+	 * 
+	 * @param buffer
+	 *            array leased by get()
+	 * */
 	public void recycle(byte[] buffer) {
-		this.leasedSize -= buffer.length;
-		this.internalSize += buffer.length;
-		if (!pool.containsKey(buffer.length)) {
-			pool.put(buffer.length, new ArrayList<byte[]>());
-		}
-		ArrayList<byte[]> bytes = pool.get(buffer.length);
-		synchronized (bytes) {
-			bytes.add(buffer);
+		int sizeClass = sizeClassOf(buffer.length);
+		if (sizeClass >= 0 && buffer.length == 1 << (sizeClass + MIN_CLASS_BITS)) {
+			AtomicReferenceArray<byte[]> freeList = freeLists[sizeClass];
+			for (int i = 0; i < freeList.length(); i++) {
+				if (freeList.get(i) == null && freeList.compareAndSet(i, null, buffer)) {
+					bytesRetained.addAndGet(buffer.length);
+					return;
+				}
+			}
 		}
+		discarded.incrementAndGet();
 	}
 
+	/**
+	 * Throws all free arrays away
+	 * */
 	public void clear() {
-		pool.clear();
+		for (AtomicReferenceArray<byte[]> freeList : freeLists) {
+			for (int i = 0; i < freeList.length(); i++) {
+				byte[] buffer = freeList.getAndSet(i, null);
+				if (buffer != null) {
+					bytesRetained.addAndGet(-buffer.length);
+				}
+			}
+		}
 	}
 
-	private void logMemoryUsed() {
-		Log.v("ByteBufferPool", "Memory used " + leasedSize + "/" + internalSize + " total = " + (leasedSize + internalSize));
+	/**
+	 * Calculates the size class of a number of bytes
+	 * 
+	 * @param size
+	 *            number of bytes
+	 * @return index of the smallest class that can hold size bytes, -1 if size is too large for the pool
+	 * */
+	private static int sizeClassOf(int size) {
+		if (size > 1 << MAX_CLASS_BITS) {
+			return -1;
+		}
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1); // round up to a power of two
+		return Math.max(bits, MIN_CLASS_BITS) - MIN_CLASS_BITS;
 	}
 
+	/**
+	 * Getter for the number of leases that got a pooled array
+	 * 
+	 * @return hits
+	 * */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Getter for the number of leases that had to allocate a new array
+	 * 
+	 * @return misses
+	 * */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Getter for the number of recycled arrays that were not kept, because their class was full or they did not fit
+	 * into any class
+	 * 
+	 * @return discarded arrays
+	 * */
+	public long getDiscarded() {
+		return discarded.get();
+	}
+
+	/**
+	 * Getter for the number of bytes of all free arrays in the pool
+	 * 
+	 * @return bytes retained
+	 * */
+	public long getBytesRetained() {
+		return bytesRetained.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ByteBufferPool: hits: %d, misses: %d, discarded: %d, bytes retained: %d", getHits(), getMisses(), getDiscarded(), getBytesRetained());
+	}
 }
@@ -0,0 +1,888 @@
+package de.medieninf.mobcomp.multris.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.medieninf.mobcomp.multris.network.converters.MessageConverter;
+import de.medieninf.mobcomp.multris.network.transport.Transport;
+import de.medieninf.mobcomp.multris.network.transport.TransportConnection;
+import de.medieninf.mobcomp.multris.network.transport.TransportServer;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         Manages the connections of a multiplayer game over a Transport, without any Android dependency. The server
+ *         accepts the connections of the clients, a client connects to the server.
+ * 
+ *         Every connection has a ConnectedThread that reads and decodes its frames and a WriterThread that drains its
+ *         OutboundQueue. The server relays the frames of a client to all other clients as they are, only their header
+ *         is checked before. The decoded messages are processed one after another by the DeserializeThread and handed
+ *         to the Listener.
+ * 
+ *         BluetoothService runs it over Bluetooth on the devices; the load generator runs the very same host path over
+ *         the loopback or the TCP transport.
+ * */
+public class ConnectionManager {
+
+	// Constants that indicate the current connection state
+	public static final int STATE_NONE = 0; // do nothing
+	public static final int STATE_LISTEN = 1; // listening for incoming
+	public static final int STATE_CONNECTING = 2; // initiating an outgoing
+	public static final int STATE_CONNECTED = 3; // connected to a remote
+	public static final int STATE_DISCOVERING = 4; // initiating an outgoing
+
+	/**
+	 * Gets told what happens to the connections and receives the messages. Called by the threads of the
+	 * ConnectionManager, the messages only by the DeserializeThread
+	 * */
+	public interface Listener {
+		void stateChanged(int state);
+
+		void connected(String address, String name);
+
+		void connectionFailed();
+
+		void connectionLost(String address);
+
+		void pauseReceived();
+
+		void resumeReceived();
+
+		void gameStarted(int playerNo, int playerCount, boolean lockstep, int seed);
+
+		void messageReceived(BTMessage btmsg);
+	}
+
+	private Transport transport;
+	private final Listener listener;
+
+	// Threads
+	private AcceptThread acceptThread;
+	private ConnectThread connectThread;
+	private DeserializeThread deserializeThread;
+	private ArrayList<ConnectedThread> connections = new ArrayList<ConnectedThread>(); // guarded by this
+	private ConnectedThread[] connectionArray = new ConnectedThread[0]; // copy of connections, replaced on every change
+	private LinkedBlockingQueue<BTMessage> queue;
+	private ByteBufferPool byteBufferPool = new ByteBufferPool();
+	private MessageConverter messageConverter = new MessageConverter();
+	private QueuePolicy[] queuePolicies = new QueuePolicy[BTMessage.MESSAGE_TYPES]; // mID -> policy of full queues
+
+	private int connectionState;
+	private boolean server;
+	private int pauseCounter;
+
+	private boolean lockstep; // devices only exchange their inputs during a game, chosen by the server
+	private int lockstepSeed; // shared by all devices of a lockstep game
+
+	private final AtomicLong framesReceived = new AtomicLong();
+	private final AtomicLong framesWritten = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param transport
+	 *            transport connections are made over
+	 * @param listener
+	 *            gets the state changes and the received messages
+	 * */
+	public ConnectionManager(Transport transport, Listener listener) {
+		this.transport = transport;
+		this.listener = listener;
+		connectionState = STATE_NONE;
+
+		for (int mID = 0; mID < BTMessage.MESSAGE_TYPES; mID++) {
+			queuePolicies[mID] = QueuePolicy.BLOCK;
+		}
+		// only the latest Shape and score of a player matter
+		queuePolicies[BTMessage.SHAPE] = QueuePolicy.COALESCE;
+		queuePolicies[BTMessage.POINTS] = QueuePolicy.COALESCE;
+	}
+
+	/**
+	 * Set the current state of the connection
+	 * 
+	 * @param state
+	 *            An integer defining the current connection state
+	 */
+	public synchronized void setState(int state) {
+		connectionState = state;
+		listener.stateChanged(state);
+	}
+
+	/**
+	 * Return the current connection state.
+	 */
+	public synchronized int getState() {
+		return connectionState;
+	}
+
+	/**
+	 * Replaces the transport connections are made over. Only possible while there is no connection.
+	 * 
+	 * @param transport
+	 *            new transport
+	 * */
+	public synchronized void setTransport(Transport transport) {
+		if (connectionState != STATE_NONE && connectionState != STATE_DISCOVERING) {
+			throw new RuntimeException("Transport can not be changed while connected");
+		}
+		this.transport = transport;
+	}
+
+	/**
+	 * @return address of this device on the transport
+	 * */
+	public synchronized String getLocalAddress() {
+		return transport.getLocalAddress();
+	}
+
+	/**
+	 * Setter for the role of this device
+	 * 
+	 * @param server
+	 *            true if server, false if client
+	 * */
+	public void setServer(boolean server) {
+		this.server = server;
+	}
+
+	/**
+	 * @return true if server, false if not
+	 * */
+	public boolean isServer() {
+		return server;
+	}
+
+	/**
+	 * Start accepting incoming connections. Specifically start AcceptThread to begin a session in listening (server)
+	 * mode. Called when the Server wants to create a game
+	 * */
+	public synchronized void start() {
+		// Cancel any thread attempting to make a connection
+		if (connectThread != null) {
+			connectThread.cancel();
+			connectThread = null;
+		}
+
+		// Cancel any thread that is holding a connection
+		for (ConnectedThread connectedThread : connections) {
+			if (connectedThread != null) {
+				connectedThread.cancel();
+				connectedThread = null;
+			}
+		}
+		connections.clear();
+		connectionsChanged();
+
+		// Start the thread to listen on a TransportServer
+		if (acceptThread == null) {
+			acceptThread = new AcceptThread();
+			acceptThread.start();
+		}
+		setState(STATE_LISTEN);
+	}
+
+	/**
+	 * Start the ConnectThread to initiate a connection to a remote device. Called when a Client wants to join a game
+	 * 
+	 * @param address
+	 *            The address of the device to connect
+	 */
+	public synchronized void connect(String address) {
+		// Cancel any thread attempting to make a connection
+		if (connectionState == STATE_CONNECTING) {
+			if (connectThread != null) {
+				connectThread.cancel();
+				connectThread = null;
+			}
+		}
+
+		// Start the thread to connect with the given device
+		connectThread = new ConnectThread(address);
+		connectThread.start();
+		setState(STATE_CONNECTING);
+	}
+
+	/**
+	 * Start the ConnectedThread to begin managing a connection
+	 * 
+	 * @param connection
+	 *            The established connection to the remote device
+	 */
+	private synchronized void connected(TransportConnection connection) {
+
+		// Cancel the thread that completed the connection
+		if (connectThread != null) {
+			connectThread.cancel();
+			connectThread = null;
+		}
+
+		// Start the thread to manage the connection and perform transmissions
+		ConnectedThread connectedThread = new ConnectedThread(connection);
+		connections.add(connectedThread);
+		connectionsChanged();
+		connectedThread.start();
+
+		setState(STATE_CONNECTED);
+		listener.connected(connection.getRemoteAddress(), connection.getRemoteName());
+	}
+
+	/**
+	 * Replaces the copy of the connections that write() and relay() iterate. Has to be called with the lock of this
+	 * ConnectionManager after every change of the connections
+	 * */
+	private void connectionsChanged() {
+		connectionArray = connections.toArray(new ConnectedThread[connections.size()]);
+	}
+
+	/**
+	 * Queues a message for the ConnectedThreads. The message is encoded right away, the writer thread of every
+	 * connection does the actual write. Only encoding holds the lock of the converter: queuing may block on a full
+	 * queue, and that must not hold up everyone else who sends.
+	 * 
+	 * @param btmsg
+	 *            message to send
+	 * @param broadcast
+	 *            true if the device the message came from gets it too, else false
+	 * @see ConnectedThread#write(OutboundQueue.Frame, QueuePolicy)
+	 */
+	public void write(BTMessage btmsg, boolean broadcast) {
+		ConnectedThread[] receivers;
+		synchronized (this) {
+			if (connectionState != STATE_CONNECTED) {
+				return;
+			}
+			receivers = connectionArray; // never changed, only replaced
+		}
+		QueuePolicy policy = queuePolicies[btmsg.getmID()];
+		OutboundQueue.Frame[] frames = new OutboundQueue.Frame[receivers.length]; // null if not sent
+
+		synchronized (messageConverter) { // the converter reuses its buffer for every message
+			if (btmsg.getmID() == BTMessage.START_GAME) {
+				btmsg.setData(new Integer[] { 0, receivers.length + 1, lockstep ? 1 : 0, lockstepSeed });
+			}
+			OutboundQueue.Frame frame = encodeFrame(btmsg); // every connection gets the same frame
+
+			for (int i = 0; i < receivers.length; i++) {
+				if (broadcast || !btmsg.getpID().equals(receivers[i].getDeviceAddress())) {
+					if (btmsg.getmID() == BTMessage.START_GAME) { // only the player number differs
+						frames[i] = patchFrame(frame, messageConverter.getPlayerNoOffset(), i + 1);
+					} else {
+						frames[i] = frame;
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < receivers.length; i++) {
+			if (frames[i] != null) {
+				receivers[i].write(frames[i], policy);
+			}
+		}
+	}
+
+	/**
+	 * Encodes a message into a frame of its own, because the frame stays in the queues after the converter has been
+	 * reused
+	 * 
+	 * @param btmsg
+	 *            message to encode
+	 * @return frame
+	 * */
+	private OutboundQueue.Frame encodeFrame(BTMessage btmsg) {
+		int length = messageConverter.encode(btmsg);
+		byte[] data = new byte[length];
+		System.arraycopy(messageConverter.getBuffer(), 0, data, 0, length);
+		return new OutboundQueue.Frame(data, length, btmsg.getmID(), btmsg.getpID());
+	}
+
+	/**
+	 * Copies a frame and changes one byte of the copy, the original may still be queued
+	 * 
+	 * @param frame
+	 *            frame to copy
+	 * @param offset
+	 *            index of the byte
+	 * @param value
+	 *            new value of the byte
+	 * @return patched frame
+	 * */
+	private OutboundQueue.Frame patchFrame(OutboundQueue.Frame frame, int offset, int value) {
+		byte[] data = new byte[frame.getLength()];
+		System.arraycopy(frame.getData(), 0, data, 0, frame.getLength());
+		data[offset] = (byte) value;
+		return new OutboundQueue.Frame(data, frame.getLength(), frame.getmID(), frame.getpID());
+	}
+
+	/**
+	 * Forwards a received frame to all devices except the one it came from. The frame is sent as it is, without
+	 * encoding the message again. Only used by the server. The connections are taken like write() does, a connection
+	 * that is closed meanwhile drops the frame
+	 * 
+	 * @param buffer
+	 *            buffer that contains the received frame, it is copied into a pooled array
+	 * @param offset
+	 *            start of the frame, at its length
+	 * @param length
+	 *            length of the frame
+	 * @param mID
+	 *            message Id of the frame
+	 * @param senderAddress
+	 *            address of the device the frame came from
+	 * */
+	private void relay(byte[] buffer, int offset, int length, int mID, String senderAddress) {
+		ConnectedThread[] receivers;
+		synchronized (this) {
+			if (connectionState != STATE_CONNECTED) {
+				return;
+			}
+			receivers = connectionArray;
+		}
+		byte[] frame = byteBufferPool.get(length);
+		System.arraycopy(buffer, offset, frame, 0, length);
+		OutboundQueue.Frame outbound = new OutboundQueue.Frame(frame, length, mID, senderAddress, byteBufferPool);
+		QueuePolicy policy = queuePolicies[mID];
+		for (int i = 0; i < receivers.length; i++) {
+			if (!senderAddress.equals(receivers[i].getDeviceAddress())) {
+				outbound.retain(); // one reference per queue
+				receivers[i].write(outbound, policy);
+			}
+		}
+		outbound.release();
+	}
+
+	/**
+	 * Checks if the server forwards a received frame right after reading it, before it has been processed. Resume
+	 * events are only forwarded when no device is paused anymore, wall requests are answered by the server itself.
+	 * 
+	 * @param mID
+	 *            message Id of the frame
+	 * @return true if relayed as it is, else false
+	 * */
+	private boolean isRelayedRaw(int mID) {
+		return mID != BTMessage.RESUME_GAME && mID != BTMessage.WALL_REQUEST;
+	}
+
+	/**
+	 * Setter for the policy of a message when the queue of a connection is full. INPUT has to be BLOCK: a lockstep
+	 * game cannot go on without every input
+	 * 
+	 * @param mID
+	 *            message Id
+	 * @param policy
+	 *            drop, coalesce or block
+	 * */
+	public void setQueuePolicy(int mID, QueuePolicy policy) {
+		if (mID == BTMessage.INPUT && policy != QueuePolicy.BLOCK) {
+			throw new RuntimeException("Inputs must not be dropped or coalesced");
+		}
+		queuePolicies[mID] = policy;
+	}
+
+	/**
+	 * Tells every connected device to start the game. Draws the seed all devices share in lockstep mode. Only called
+	 * by the server
+	 * */
+	public void startGame() {
+		lockstepSeed = new Random().nextInt();
+		write(new BTMessage(BTMessage.START_GAME), true);
+	}
+
+	/**
+	 * Tells the other devices that this device has paused the game
+	 * 
+	 * @param pid
+	 *            id of this device
+	 * */
+	public void pause(String pid) {
+		if (server) {
+			pauseCounter += 1;
+		}
+		write(new BTMessage(BTMessage.PAUSE_GAME, pid), false);
+	}
+
+	/**
+	 * Tells the other devices that this device has resumed the game
+	 * 
+	 * @param pid
+	 *            id of this device
+	 * */
+	public void resume(String pid) {
+		if (server) {
+			pauseCounter -= 1;
+		}
+		write(new BTMessage(BTMessage.RESUME_GAME, pid), false);
+	}
+
+	/**
+	 * Stop AcceptThread so that no further incoming connections are possible
+	 * */
+	public synchronized void stopAccepting() {
+		if (acceptThread != null) {
+			acceptThread.cancel();
+			acceptThread = null;
+		}
+	}
+
+	/**
+	 * Stop all threads
+	 */
+	public synchronized void stop() {
+		if (connectThread != null) {
+			connectThread.cancel();
+			connectThread = null;
+		}
+
+		for (ConnectedThread connectedThread : connections) {
+			if (connectedThread != null) {
+				connectedThread.cancel();
+				connectedThread = null;
+			}
+		}
+		connections.clear();
+		connectionsChanged();
+
+		if (deserializeThread != null) {
+			deserializeThread.cancel();
+			deserializeThread = null;
+		}
+
+		if (acceptThread != null) {
+			acceptThread.cancel();
+			acceptThread = null;
+		}
+		setState(STATE_NONE);
+	}
+
+	/**
+	 * Indicate that the connection attempt failed and notify the Listener.
+	 */
+	private void connectionFailed() {
+		setState(STATE_NONE);
+		listener.connectionFailed();
+	}
+
+	/**
+	 * Indicate that the connection was lost, notify the Listener and stop every thread.
+	 */
+	private void connectionLost(ConnectedThread connectedThread) {
+		listener.connectionLost(connectedThread.getDeviceAddress());
+		stop(); // stop every thread
+	}
+
+	/**
+	 * @return number of players, this device included
+	 * */
+	public synchronized int getPlayerCount() {
+		return connections.size() + 1;
+	}
+
+	/**
+	 * @return true if the next game is played in lockstep mode, else false
+	 * */
+	public boolean isLockstep() {
+		return lockstep;
+	}
+
+	/**
+	 * Setter for the lockstep mode of the next game, only used by the server
+	 * 
+	 * @param lockstep
+	 *            true if the devices only exchange their inputs, false if they exchange Shapes and the Wall
+	 * */
+	public void setLockstep(boolean lockstep) {
+		this.lockstep = lockstep;
+	}
+
+	/**
+	 * @return seed of the lockstep game that has been started last
+	 * */
+	public int getLockstepSeed() {
+		return lockstepSeed;
+	}
+
+	/**
+	 * @return frames read from all connections
+	 * */
+	public long getFramesReceived() {
+		return framesReceived.get();
+	}
+
+	/**
+	 * @return frames written to all connections
+	 * */
+	public long getFramesWritten() {
+		return framesWritten.get();
+	}
+
+	/**
+	 * @return frames the OutboundQueues of the current connections have dropped or coalesced
+	 * */
+	public synchronized long getFramesDiscarded() {
+		long discarded = 0;
+		for (ConnectedThread connectedThread : connections) {
+			discarded += connectedThread.outboundQueue.getDropped() + connectedThread.outboundQueue.getCoalesced();
+		}
+		return discarded;
+	}
+
+	/**
+	 * This thread runs while listening for incoming connections. It behaves like a server-side client. It runs until
+	 * cancelled.
+	 */
+	private class AcceptThread extends Thread {
+		// The local server
+		private final TransportServer mmServerSocket;
+
+		public AcceptThread() {
+			TransportServer tmp = null;
+
+			// Create a new listening server
+			try {
+				tmp = transport.listen();
+			} catch (IOException e) {
+
+			}
+			mmServerSocket = tmp;
+		}
+
+		@Override
+		public void run() {
+			setName("AcceptThread");
+			TransportConnection socket = null;
+			if (mmServerSocket == null) {
+				return;
+			}
+			while (true) {
+				try {
+					// This is a blocking call and will only return on a
+					// successful connection or an exception
+					socket = mmServerSocket.accept();
+
+				} catch (IOException e) {
+
+					break;
+				}
+
+				if (socket != null) { // If a connection was accepted
+					synchronized (ConnectionManager.this) {
+						switch (connectionState) {
+						case STATE_LISTEN:
+						case STATE_CONNECTING:
+							// Situation normal. Start the connected thread.
+							connected(socket);
+							break;
+						case STATE_NONE:
+						case STATE_CONNECTED:
+							// connect if there's no connection yet
+							if (!alreadyConnected(socket)) {
+								connected(socket);
+								break;
+							}
+							try {
+								socket.close();
+							} catch (IOException e) {
+
+							}
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Checks if there's already an open connection to this socket.
+		 * */
+		private boolean alreadyConnected(TransportConnection socket) {
+			for (ConnectedThread connectedThread : connections) {
+				if (socket.getRemoteAddress().equals(connectedThread.getDeviceAddress())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public void cancel() {
+			if (mmServerSocket == null) {
+				return;
+			}
+			try {
+				mmServerSocket.close();
+			} catch (IOException e) {
+
+			}
+		}
+	}
+
+	/**
+	 * This thread runs while attempting to make an outgoing connection with a device. It runs straight through; the
+	 * connection either succeeds or fails.
+	 */
+	private class ConnectThread extends Thread {
+		private final TransportConnection mmSocket;
+
+		public ConnectThread(String address) {
+			TransportConnection tmp = null;
+
+			// Get a connection to the device with the given address
+			try {
+				tmp = transport.open(address);
+			} catch (IOException e) {
+
+			}
+			mmSocket = tmp;
+		}
+
+		@Override
+		public void run() {
+			setName("ConnectThread");
+			if (mmSocket == null) {
+				connectionFailed();
+				return;
+			}
+
+			// Make the connection, the transport cancels a running discovery
+			try {
+				// This is a blocking call and will only return on a
+				// successful connection or an exception
+				mmSocket.connect();
+			} catch (IOException e) {
+				connectionFailed();
+				// Close the socket
+				try {
+					mmSocket.close();
+				} catch (IOException e2) {
+
+				}
+				return;
+			}
+
+			// Reset the ConnectThread because we're done
+			synchronized (ConnectionManager.this) {
+				connectThread = null;
+			}
+
+			// Start the connected thread
+			connected(mmSocket);
+		}
+
+		public void cancel() {
+			if (mmSocket == null) {
+				return;
+			}
+			try {
+				mmSocket.close();
+			} catch (IOException e) {
+
+			}
+		}
+	}
+
+	/**
+	 * This thread runs during a connection with a remote device. It handles all incoming transmissions, outgoing ones
+	 * are queued for its WriterThread.
+	 */
+	private class ConnectedThread extends Thread {
+		private final TransportConnection connectedSocket;
+		private final InputStream inStream;
+		private final OutboundQueue outboundQueue;
+		private final WriterThread writerThread;
+
+		public ConnectedThread(TransportConnection socket) {
+			setName("ConnectedThread");
+			connectedSocket = socket;
+			InputStream tmpIn = null;
+			OutputStream tmpOut = null;
+
+			// Get the input and output streams of the connection
+			try {
+				tmpIn = socket.getInputStream();
+				tmpOut = socket.getOutputStream();
+			} catch (IOException e) {
+
+			}
+
+			inStream = tmpIn;
+			outboundQueue = new OutboundQueue(OutboundQueue.DEFAULT_CAPACITY);
+			writerThread = new WriterThread(outboundQueue, tmpOut);
+
+			if (deserializeThread == null) { //
+				queue = new LinkedBlockingQueue<BTMessage>();
+				deserializeThread = new DeserializeThread();
+				deserializeThread.start();
+			}
+		}
+
+		@Override
+		public void run() {
+			writerThread.start();
+			FrameReader frameReader = new FrameReader(inStream, FrameReader.DEFAULT_MAX_FRAME_SIZE);
+			MessageConverter messageConverter = new MessageConverter(); // decodes the frames of this connection
+			final int SIZE_IN_BYTES = MessageConverter.LENGTH_FIELD_SIZE;
+
+			try {
+				// Keep listening to the InputStream while connected
+				while (frameReader.next()) {
+					// the frame is a view into the buffer of the reader, it is gone with the next frame
+					byte[] buffer = frameReader.getBuffer();
+					int offset = frameReader.getFrameOffset();
+					int length = frameReader.getFrameLength();
+					int mID = MessageConverter.getMessageId(buffer, offset);
+					framesReceived.incrementAndGet();
+					try { // a frame with a corrupt header must not reach the other devices
+						MessageConverter.checkHeader(buffer, offset, length);
+					} catch (RuntimeException e) {
+						throw new IOException("Corrupt header: " + e.getMessage());
+					}
+					if (server && isRelayedRaw(mID)) {
+						relay(buffer, offset, length, mID, getDeviceAddress()); // routed by the header only
+					}
+					BTMessage btmsg;
+					try { // the payload is only decoded after relaying, it does not hold up the other devices
+						btmsg = messageConverter.decode(buffer, offset + SIZE_IN_BYTES, length - SIZE_IN_BYTES);
+					} catch (RuntimeException e) {
+						throw new IOException("Corrupt frame of message " + mID + ": " + e.getMessage());
+					}
+					queue.put(btmsg);
+				}
+				connectionLost(this); // the stream has ended
+			} catch (IOException ioe) {
+				connectionLost(this);
+			} catch (InterruptedException ioe) {
+			}
+		}
+
+		/**
+		 * Queues a frame for the connected OutStream. Never writes itself, so the caller only waits if the queue is full
+		 * and the policy is BLOCK.
+		 * 
+		 * @param frame
+		 *            The frame to write
+		 * @param policy
+		 *            what to do if the queue is full
+		 */
+		public void write(OutboundQueue.Frame frame, QueuePolicy policy) {
+			outboundQueue.offer(frame, policy);
+		}
+
+		public String getDeviceAddress() {
+			return connectedSocket.getRemoteAddress();
+		}
+
+		public void cancel() {
+			outboundQueue.close();
+			try {
+				connectedSocket.close();
+			} catch (IOException e) {
+
+			}
+		}
+	}
+
+	/**
+	 * This thread writes the queued frames of one connection to its OutStream. It runs until the queue is closed or
+	 * the connection is broken; a broken connection is detected by the reading ConnectedThread.
+	 */
+	private class WriterThread extends Thread {
+		private final OutboundQueue outboundQueue;
+		private final OutputStream outStream;
+
+		public WriterThread(OutboundQueue outboundQueue, OutputStream outStream) {
+			setName("WriterThread");
+			this.outboundQueue = outboundQueue;
+			this.outStream = outStream;
+		}
+
+		@Override
+		public void run() {
+			try {
+				OutboundQueue.Frame frame;
+				while ((frame = outboundQueue.take()) != null) {
+					try {
+						outStream.write(frame.getData(), 0, frame.getLength());
+						framesWritten.incrementAndGet();
+					} finally {
+						frame.release();
+					}
+				}
+			} catch (IOException e) {
+				outboundQueue.close(); // nothing can be written anymore
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+	/**
+	 * This Thread runs as long the ConnectedThread runs and works as a Cusumer. It contains a queue that stores
+	 * messages that have been received and decoded by the ConnectedThreads. As long as messages are stored in this
+	 * queue they will be processed to the application
+	 */
+	private class DeserializeThread extends Thread {
+
+		public DeserializeThread() {
+			setName("DeserializeThread");
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					process(queue.take());
+				}
+			} catch (InterruptedException e) {
+
+			}
+		}
+
+		/**
+		 * Hands a received message to the Listener. The server forwards resume events to the other devices as well,
+		 * all other frames have already been relayed by the ConnectedThread.
+		 * 
+		 * @param btmsg
+		 *            decoded message
+		 * */
+		private void process(BTMessage btmsg) throws InterruptedException {
+
+			int mId = btmsg.getmID();
+
+			switch (mId) {
+			case BTMessage.PAUSE_GAME:
+				if (server) {
+					pauseCounter += 1;
+				}
+				listener.pauseReceived();
+				break;
+			case BTMessage.RESUME_GAME:
+				if (server) {
+					pauseCounter -= 1;
+				}
+				listener.resumeReceived();
+				break;
+			case BTMessage.START_GAME:
+				Integer[] gameInfo = ((Integer[]) btmsg.getData());
+				listener.gameStarted(gameInfo[0], gameInfo[1], gameInfo[2] != 0, gameInfo[3]);
+				break;
+			default:
+				listener.messageReceived(btmsg);
+			}
+
+			if (server && mId == BTMessage.RESUME_GAME) {
+				if (pauseCounter == 0) {
+					ConnectionManager.this.write(btmsg, false); // an alle anderen
+					// weiterleiten
+				}
+			}
+		}
+
+		public void cancel() {
+			this.interrupt();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package de.medieninf.mobcomp.multris.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.medieninf.mobcomp.multris.network.converters.IntegerConverter;
+import de.medieninf.mobcomp.multris.network.converters.MessageConverter;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Splits an InputStream into frames. The stream is read in bulk into one buffer that is reused for the whole
+ *         connection, so a single read usually brings in several frames. A frame is handed out as a view into that
+ *         buffer: it is only valid until next() is called again, whoever needs it longer has to copy it.
+ * 
+ *         The length field of every frame is checked before anything is read for it, so a corrupt length ends the
+ *         connection instead of allocating huge arrays.
+ * */
+public class FrameReader {
+
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024; // including the length field
+	private static final int MIN_DATA_SIZE = 2; // mID and length of the pID
+
+	private InputStream inStream;
+	private byte[] buffer;
+	private int start; // first byte that has not been handed out yet
+	private int end; // first free byte
+	private int frameOffset;
+	private int frameLength;
+
+	private long readCalls;
+	private long frames;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param inStream
+	 *            stream the frames are read from
+	 * @param maxFrameSize
+	 *            maximum size of a frame including its length field, larger frames are treated as corrupt
+	 * */
+	public FrameReader(InputStream inStream, int maxFrameSize) {
+		this.inStream = inStream;
+		this.buffer = new byte[maxFrameSize];
+	}
+
+	/**
+	 * Reads the next frame. Blocks until the frame is complete.
+	 * 
+	 * @return true if there is a new frame, false if the stream has ended between two frames
+	 * @throws IOException
+	 *             if the stream fails, ends within a frame or the length field is corrupt
+	 * */
+	public boolean next() throws IOException {
+		start += frameLength; // the previous frame is released
+		frameLength = 0;
+		if (!fill(MessageConverter.LENGTH_FIELD_SIZE)) {
+			return false;
+		}
+		int dataSize = IntegerConverter.bytearrayToInt(buffer, start);
+		if (dataSize < MIN_DATA_SIZE || dataSize > buffer.length - MessageConverter.LENGTH_FIELD_SIZE) {
+			throw new IOException("Corrupt frame length: " + dataSize);
+		}
+		if (!fill(MessageConverter.LENGTH_FIELD_SIZE + dataSize)) {
+			throw new IOException("Stream ended within a frame");
+		}
+		frameOffset = start;
+		frameLength = MessageConverter.LENGTH_FIELD_SIZE + dataSize;
+		frames++;
+		return true;
+	}
+
+	/**
+	 * Makes sure that a number of bytes starting at start are in the buffer. Moves the bytes that are left to the
+	 * front of the buffer, if they would not fit otherwise.
+	 * 
+	 * @param bytes
+	 *            number of bytes needed
+	 * @return false if the stream has ended before any of them was read
+	 * @throws IOException
+	 *             if the stream fails or ends after some of them were read
+	 * */
+	private boolean fill(int bytes) throws IOException {
+		if (start == end) {
+			start = 0;
+			end = 0;
+		} else if (buffer.length - start < bytes) {
+			System.arraycopy(buffer, start, buffer, 0, end - start);
+			end -= start;
+			start = 0;
+		}
+		while (end - start < bytes) {
+			int read = inStream.read(buffer, end, buffer.length - end);
+			readCalls++;
+			if (read == -1) {
+				if (end == start) {
+					return false;
+				}
+				throw new IOException("Stream ended within a frame");
+			}
+			end += read;
+		}
+		return true;
+	}
+
+	/**
+	 * Getter for the buffer that holds the current frame
+	 * 
+	 * @return buffer, only valid until next() is called again
+	 * */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Getter for the start of the current frame
+	 * 
+	 * @return index of the length field of the frame within getBuffer()
+	 * */
+	public int getFrameOffset() {
+		return frameOffset;
+	}
+
+	/**
+	 * Getter for the length of the current frame
+	 * 
+	 * @return number of bytes of the frame, including its length field
+	 * */
+	public int getFrameLength() {
+		return frameLength;
+	}
+
+	/**
+	 * Getter for the number of reads from the stream
+	 * 
+	 * @return read calls
+	 * */
+	public long getReadCalls() {
+		return readCalls;
+	}
+
+	/**
+	 * Getter for the number of frames that have been read
+	 * 
+	 * @return frames
+	 * */
+	public long getFrames() {
+		return frames;
+	}
+}
@@ -0,0 +1,241 @@
+package de.medieninf.mobcomp.multris.network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Bounded queue of the frames that still have to be written to one connection. The game thread only puts frames
+ *         into it, a writer thread of the connection takes them out and does the blocking write. So a slow device does
+ *         not stall the game loop, unless the BLOCK policy is used and its queue is full.
+ * */
+public class OutboundQueue {
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private Frame[] frames; // ring buffer
+	private int head; // index of the oldest frame
+	private int size;
+	private boolean closed;
+
+	private int dropped;
+	private int coalesced;
+
+	/**
+	 * A frame that is ready to be written. A frame can be put into the queues of several connections, so it must not
+	 * be changed afterwards. If its buffer has been leased from a ByteBufferPool, every queue holds a reference and
+	 * the buffer is recycled when the last one is released.
+	 * */
+	public static class Frame {
+		private byte[] data;
+		private int length;
+		private int mID;
+		private String pID;
+		private ByteBufferPool pool;
+		private AtomicInteger references;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param data
+		 *            buffer that contains the frame, starting at index 0
+		 * @param length
+		 *            length of the frame
+		 * @param mID
+		 *            message Id of the frame
+		 * @param pID
+		 *            player Id of the frame
+		 * */
+		public Frame(byte[] data, int length, int mID, String pID) {
+			this(data, length, mID, pID, null);
+		}
+
+		/**
+		 * Constructor for a frame whose buffer goes back to a pool. The creator holds the first reference.
+		 * 
+		 * @param data
+		 *            buffer that contains the frame, starting at index 0
+		 * @param length
+		 *            length of the frame
+		 * @param mID
+		 *            message Id of the frame
+		 * @param pID
+		 *            player Id of the frame
+		 * @param pool
+		 *            pool the buffer has been leased from, null if it is not pooled
+		 * */
+		public Frame(byte[] data, int length, int mID, String pID, ByteBufferPool pool) {
+			this.data = data;
+			this.length = length;
+			this.mID = mID;
+			this.pID = pID;
+			this.pool = pool;
+			this.references = new AtomicInteger(1);
+		}
+
+		/**
+		 * Adds a reference to a pooled frame, e.g. before it is put into another queue
+		 * */
+		public void retain() {
+			if (pool != null) {
+				references.incrementAndGet();
+			}
+		}
+
+		/**
+		 * Releases a reference to a pooled frame. The buffer goes back to the pool when nobody holds the frame
+		 * anymore.
+		 * */
+		public void release() {
+			if (pool != null && references.decrementAndGet() == 0) {
+				pool.recycle(data);
+			}
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public int getmID() {
+			return mID;
+		}
+
+		public String getpID() {
+			return pID;
+		}
+
+		/**
+		 * Checks if this frame is outdated by another one
+		 * 
+		 * @param other
+		 *            the newer frame
+		 * @return true if both belong to the same message and player, else false
+		 * */
+		boolean isReplacedBy(Frame other) {
+			return mID == other.mID && pID.equals(other.pID);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity
+	 *            maximum number of queued frames
+	 * */
+	public OutboundQueue(int capacity) {
+		frames = new Frame[capacity];
+	}
+
+	/**
+	 * Puts a frame into the queue. The queue takes over one reference of the frame and releases it when the frame is
+	 * not queued, replaced or thrown away.
+	 * 
+	 * @param frame
+	 *            frame to be written
+	 * @param policy
+	 *            what to do if the queue is full
+	 * @return true if the frame is queued, false if it has been dropped or the queue is closed
+	 * */
+	public synchronized boolean offer(Frame frame, QueuePolicy policy) {
+		if (policy == QueuePolicy.COALESCE) {
+			for (int i = size - 1; i >= 0; i--) { // newest first
+				int index = (head + i) % frames.length;
+				if (frames[index].isReplacedBy(frame)) {
+					frames[index].release();
+					frames[index] = frame;
+					coalesced++;
+					return true;
+				}
+			}
+		}
+		if (size == frames.length && policy == QueuePolicy.DROP) {
+			dropped++;
+			frame.release();
+			return false;
+		}
+		try {
+			while (size == frames.length && !closed) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			frame.release();
+			return false;
+		}
+		if (closed) {
+			frame.release();
+			return false;
+		}
+		frames[(head + size) % frames.length] = frame;
+		size++;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Takes the oldest frame out of the queue, waits if there is none. The caller has to release the frame after it
+	 * has been written.
+	 * 
+	 * @return oldest frame, null if the queue has been closed
+	 * @throws InterruptedException
+	 *             if the writer thread is interrupted while waiting
+	 * */
+	public synchronized Frame take() throws InterruptedException {
+		while (size == 0 && !closed) {
+			wait();
+		}
+		if (closed) {
+			return null;
+		}
+		Frame frame = frames[head];
+		frames[head] = null;
+		head = (head + 1) % frames.length;
+		size--;
+		notifyAll();
+		return frame;
+	}
+
+	/**
+	 * Closes the queue. Waiting callers return, queued frames are thrown away.
+	 * */
+	public synchronized void close() {
+		closed = true;
+		for (; size > 0; size--) {
+			frames[head].release();
+			frames[head] = null;
+			head = (head + 1) % frames.length;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Getter for the number of queued frames
+	 * 
+	 * @return size
+	 * */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Getter for the number of frames dropped because the queue was full
+	 * 
+	 * @return dropped frames
+	 * */
+	public synchronized int getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Getter for the number of frames that replaced an outdated frame
+	 * 
+	 * @return coalesced frames
+	 * */
+	public synchronized int getCoalesced() {
+		return coalesced;
+	}
+}
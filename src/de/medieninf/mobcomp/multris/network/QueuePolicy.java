@@ -0,0 +1,18 @@
+package de.medieninf.mobcomp.multris.network;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         What an OutboundQueue does with a frame when there is no room left for it.
+ * */
+public enum QueuePolicy {
+	/** The new frame is thrown away */
+	DROP,
+	/**
+	 * The new frame replaces a queued frame of the same message and player, which is outdated anyway. Frames are
+	 * replaced even if there is room left. If there is no such frame, the caller waits like with BLOCK.
+	 */
+	COALESCE,
+	/** The caller waits until the writer has made room */
+	BLOCK;
+}
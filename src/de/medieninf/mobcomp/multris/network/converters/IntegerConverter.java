@@ -11,10 +11,20 @@ public class IntegerConverter {
 	 * @returns converted byteArray as Integer
 	 * */
 	public static int bytearrayToInt(byte[] byteArray) {
+		return bytearrayToInt(byteArray, 0);
+	}
+
+	/**
+	 * converts 4 bytes of a byte-Array to an Integer number
+	 * @param byteArray
+	 * @param offset index of the first byte
+	 * @returns converted bytes as Integer
+	 * */
+	public static int bytearrayToInt(byte[] byteArray, int offset) {
 		// byte[] -> int
 		int number = 0;
 		for (int i = 0; i < 4; ++i) {
-			number |= (byteArray[3 - i] & 0xff) << (i << 3);
+			number |= (byteArray[offset + 3 - i] & 0xff) << (i << 3);
 		}
 		return number;
 	}
@@ -26,12 +36,21 @@ public class IntegerConverter {
 	 * */
 	public static byte[] intToBytearray(int number) {
 		byte[] byteArray = new byte[4];
+		intToBytearray(number, byteArray, 0);
+		return byteArray;
+	}
 
+	/**
+	 * converts an Integer number into 4 bytes of an existing byte-Array
+	 * @param number
+	 * @param byteArray array the bytes are written into
+	 * @param offset index of the first byte
+	 * */
+	public static void intToBytearray(int number, byte[] byteArray, int offset) {
 		// int -> byte[]
 		for (int i = 0; i < 4; ++i) {
 			int shift = i << 3; // i * 8
-			byteArray[3 - i] = (byte) ((number & (0xff << shift)) >>> shift);
+			byteArray[offset + 3 - i] = (byte) ((number & (0xff << shift)) >>> shift);
 		}
-		return byteArray;
 	}
 }
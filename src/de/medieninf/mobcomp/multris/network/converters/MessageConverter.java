@@ -1,71 +1,476 @@
 package de.medieninf.mobcomp.multris.network.converters;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.data.Shape;
+import de.medieninf.mobcomp.multris.game.data.Wall;
+import de.medieninf.mobcomp.multris.game.data.WallDelta;
+import de.medieninf.mobcomp.multris.game.enums.ShapeType;
+import de.medieninf.mobcomp.multris.game.lockstep.InputBatch;
+import de.medieninf.mobcomp.multris.game.lockstep.InputBuffer;
+import de.medieninf.mobcomp.multris.network.BTMessage;
 
 /**
  * 
  * @author marcel bechtold
  * 
- *         Class to convert Objects (usually BTMessages) to an array of Bytes and vice versa
+ *         Class to convert BTMessages to an array of Bytes and vice versa. It uses a hand-written binary format instead
+ *         of Java serialization:
+ * 
+ *         <pre>
+ * frame   = header | payload
+ * header  = length (4 bytes, not counting itself) | mID (1 byte) | number of chars of the pID (1 byte) | pID, one byte per char
+ * SHAPE   = ShapeType ordinal (1 byte) | rotation (1 byte) | posX (zigzag varint) | posY (zigzag varint) | speed (4 bytes)
+ * WALL    = version (varint) | number of rows n | the lowest n rows, each: mask (varint) | bitmap ids of the occupied bricks, two per byte
+ * WALL_DELTA = version (varint) | bitmap id (1 byte) | number of cells n (varint) | n cells, row * COLS + col (1 byte each)
+ *              | number of deleted rows m (varint) | m rows (1 byte each)
+ * WALL_REQUEST = no payload
+ * POINTS  = points (varint)
+ * GAME_OVER = gameOver (1 byte)
+ * START_GAME = playerNo (1 byte) | playerCount (varint) | lockstep (1 byte) | seed (4 bytes)
+ * INPUT   = playerNo (varint) | first tick (varint) | number of inputs n (varint) | n inputs (1 byte each)
+ * </pre>
+ * 
+ *         The header has a fixed layout, so a frame can be routed by its mID and pID without decoding it.
+ * 
+ *         Messages are encoded into a buffer that is reused for every message, so an instance must not be shared
+ *         between threads without synchronization.
  * */
 public class MessageConverter {
 	final static int BYTESOFINT = 4;
+	public final static int LENGTH_FIELD_SIZE = BYTESOFINT; // in front of every frame
+	public final static int MID_OFFSET = LENGTH_FIELD_SIZE; // position of the mID within a frame
+	public final static int PID_OFFSET = MID_OFFSET + 1; // position of the pID within a frame
+	private final static int MAX_PID_LENGTH = 0xff;
+	private final static int INITIAL_BUFFER_SIZE = 256;
+
+	private static final ShapeType[] SHAPE_TYPES = ShapeType.values();
+
+	private byte[] buffer; // frames are encoded into this one
+	private int position;
+	private int playerNoOffset; // where playerNo has been written in the last START_GAME frame
+	private byte[] in; // frame that is currently decoded
+	private int inPosition;
+	private int inEnd; // first index after the frame, nothing behind it may be read
+
+	public MessageConverter() {
+		buffer = new byte[INITIAL_BUFFER_SIZE];
+	}
 
 	/**
-	 * Converts an Object to a byte-Array
+	 * Converts a BTMessage into a frame. The frame is written into the reused buffer and stays valid until the next
+	 * call.
 	 * 
-	 * @param o
-	 *            Object that has to be serialized
-	 * @return converted object (byte-array)
+	 * @param btmsg
+	 *            BTMessage that has to be converted
+	 * @return length of the frame, that starts at index 0 of getBuffer()
 	 * */
-	public static byte[] serializeObject(Object o) {
-		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ObjectOutputStream oos = new ObjectOutputStream(baos);
-			oos.writeObject(o);
-			oos.close();
-			byte[] buffer = baos.toByteArray();
-			byte[] retbuffer = new byte[buffer.length + BYTESOFINT];
-			byte[] ibuffer = IntegerConverter.intToBytearray(buffer.length);
-			if (ibuffer.length != BYTESOFINT) {
-				throw new RuntimeException("BYTESOFINT NOT 4");
-			}
-			System.arraycopy(ibuffer, 0, retbuffer, 0, BYTESOFINT);
-			System.arraycopy(buffer, 0, retbuffer, BYTESOFINT, buffer.length);
-			return retbuffer;
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
+	public int encode(BTMessage btmsg) {
+		position = BYTESOFINT; // length is written when the size is known
+		writeByte(btmsg.getmID());
+		writeString(btmsg.getpID());
+		Object data = btmsg.getData();
+		switch (btmsg.getmID()) {
+		case BTMessage.SHAPE:
+			writeShape((Shape) data);
+			break;
+		case BTMessage.WALL:
+			writeWall((Wall) data);
+			break;
+		case BTMessage.POINTS:
+			writeVarInt((Integer) data);
+			break;
+		case BTMessage.GAME_OVER:
+			writeByte((Boolean) data ? 1 : 0);
+			break;
+		case BTMessage.START_GAME:
+			Integer[] gameInfo = (Integer[]) data;
+			playerNoOffset = position; // fixed size, so it can be patched for every player
+			writeByte(gameInfo == null ? 0 : gameInfo[0]);
+			writeVarInt(gameInfo == null ? 0 : gameInfo[1]);
+			writeByte(gameInfo == null ? 0 : gameInfo[2]);
+			writeFixedInt(position, gameInfo == null ? 0 : gameInfo[3]);
+			position += BYTESOFINT;
+			break;
+		case BTMessage.INPUT:
+			writeInputBatch((InputBatch) data);
+			break;
+		case BTMessage.WALL_DELTA:
+			writeWallDelta((Wall) data);
+			break;
+		case BTMessage.PAUSE_GAME:
+		case BTMessage.RESUME_GAME:
+		case BTMessage.WALL_REQUEST:
+			break;
+		default:
+			throw new RuntimeException("Unknown message id: " + btmsg.getmID());
 		}
+		writeFixedInt(0, position - BYTESOFINT);
+		return position;
+	}
+
+	/**
+	 * Getter for the position of playerNo in the last encoded START_GAME frame. The frame can be sent to every player
+	 * by patching this byte only.
+	 * 
+	 * @return index of playerNo within the frame
+	 * */
+	public int getPlayerNoOffset() {
+		return playerNoOffset;
+	}
+
+	/**
+	 * Reads the message Id of a frame without decoding it
+	 * 
+	 * @param frame
+	 *            frame including its length
+	 * @return mID
+	 * */
+	public static int getMessageId(byte[] frame) {
+		return getMessageId(frame, 0);
 	}
 
 	/**
-	 * Converts an byte-Array to an Object
+	 * Reads the message Id of a frame within a larger buffer without decoding it
 	 * 
-	 * @param b
-	 *            byte-array that has to be desezialized
-	 * @return converted byte-array (Object)
+	 * @param buffer
+	 *            buffer that contains the frame
+	 * @param offset
+	 *            start of the frame, at its length
+	 * @return mID
+	 * */
+	public static int getMessageId(byte[] buffer, int offset) {
+		return buffer[offset + MID_OFFSET] & 0xff;
+	}
+
+	/**
+	 * Checks the header of a frame without decoding its payload: a known mID and a pID within the frame. That is all a
+	 * frame needs to be routed
 	 * 
+	 * @param buffer
+	 *            buffer that contains the frame
+	 * @param offset
+	 *            start of the frame, at its length
+	 * @param length
+	 *            length of the frame including its length field
 	 * */
-	public static Object deserializeObject(byte[] b) {
-		Object o = null;
-		ByteArrayInputStream bais = new ByteArrayInputStream(b, 0, b.length);
-		ObjectInputStream in;
+	public static void checkHeader(byte[] buffer, int offset, int length) {
+		if (length < PID_OFFSET + 1) {
+			throw new RuntimeException("Frame of " + length + " bytes has no header");
+		}
+		int mID = getMessageId(buffer, offset);
+		if (mID >= BTMessage.MESSAGE_TYPES) {
+			throw new RuntimeException("Unknown message id: " + mID);
+		}
+		int pidLength = buffer[offset + PID_OFFSET] & 0xff;
+		if (PID_OFFSET + 1 + pidLength > length) {
+			throw new RuntimeException("Player Id of " + pidLength + " chars does not fit into " + length + " bytes");
+		}
+	}
+
+	/**
+	 * Getter for the buffer the last frame has been written into
+	 * 
+	 * @return buffer
+	 * */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Converts a frame without its length into a BTMessage. A frame that is cut short, holds counts that do not fit
+	 * into it or values outside the game area is rejected with a RuntimeException.
+	 * 
+	 * @param data
+	 *            buffer that contains the frame
+	 * @param offset
+	 *            start of the frame, right after its length
+	 * @param length
+	 *            length of the frame
+	 * @return converted BTMessage
+	 * */
+	public BTMessage decode(byte[] data, int offset, int length) {
+		in = data;
+		inPosition = offset;
+		inEnd = offset + length;
 		try {
-			in = new ObjectInputStream(bais);
-			o = in.readObject();
-			in.close();
-			return o;
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		} catch (ClassNotFoundException c) {
-			c.printStackTrace();
-			throw new RuntimeException(c);
+			int mID = readByte();
+			String pID = readString();
+			BTMessage btmsg;
+			switch (mID) {
+			case BTMessage.SHAPE:
+				btmsg = new BTMessage(mID, pID, readShape());
+				break;
+			case BTMessage.WALL:
+				btmsg = new BTMessage(mID, pID, readWall());
+				break;
+			case BTMessage.POINTS:
+				btmsg = new BTMessage(mID, pID, readVarInt());
+				break;
+			case BTMessage.GAME_OVER:
+				btmsg = new BTMessage(mID, pID, readByte() != 0);
+				break;
+			case BTMessage.START_GAME:
+				btmsg = new BTMessage(mID, pID);
+				btmsg.setData(new Integer[] { readByte(), readVarInt(), readByte(), readFixedInt() });
+				break;
+			case BTMessage.INPUT:
+				btmsg = new BTMessage(mID, pID, readInputBatch());
+				break;
+			case BTMessage.WALL_DELTA:
+				btmsg = new BTMessage(mID, pID, readWallDelta());
+				break;
+			case BTMessage.PAUSE_GAME:
+			case BTMessage.RESUME_GAME:
+			case BTMessage.WALL_REQUEST:
+				btmsg = new BTMessage(mID, pID);
+				break;
+			default:
+				throw new RuntimeException("Unknown message id: " + mID);
+			}
+			if (inPosition != offset + length) {
+				throw new RuntimeException("Frame of message " + mID + " has " + length + " bytes, read " + (inPosition - offset));
+			}
+			return btmsg;
+		} finally {
+			in = null;
+		}
+	}
+
+	private void writeShape(Shape shape) {
+		writeByte(shape.getShapeType().ordinal());
+		writeByte(shape.getRotation());
+		writeVarInt(zigzag(shape.getPosX()));
+		writeVarInt(zigzag(shape.getPosY()));
+		writeFixedInt(position, Float.floatToIntBits(shape.getSpeed()));
+		position += BYTESOFINT;
+	}
+
+	private Shape readShape() {
+		ShapeType type = SHAPE_TYPES[readByte()];
+		int rotation = readByte();
+		int posX = unzigzag(readVarInt());
+		int posY = unzigzag(readVarInt());
+		float speed = Float.intBitsToFloat(readFixedInt());
+		Shape shape = new Shape(posX, posY, type);
+		shape.setRotation(rotation);
+		shape.setSpeed(speed);
+		return shape;
+	}
+
+	private void writeWall(Wall wall) {
+		int usedRows = wall.getHeightOfHighestTower(); // all rows above are empty
+		writeVarInt(wall.getVersion());
+		writeVarInt(usedRows);
+		for (int row = GameState.ROWS - usedRows; row < GameState.ROWS; row++) {
+			int mask = wall.getRowMask(row);
+			writeVarInt(mask);
+			boolean high = false;
+			for (int col = 0; col < GameState.COLS; col++) {
+				if ((mask & (1 << col)) != 0) {
+					if (high) {
+						buffer[position - 1] |= wall.getBrick(row, col) << 4;
+					} else {
+						writeByte(wall.getBrick(row, col));
+					}
+					high = !high;
+				}
+			}
+		}
+	}
+
+	private Wall readWall() {
+		Wall wall = new Wall();
+		wall.setVersion(readVarInt());
+		int usedRows = readCount(GameState.ROWS);
+		for (int row = GameState.ROWS - usedRows; row < GameState.ROWS; row++) {
+			int mask = readVarInt();
+			boolean high = false;
+			for (int col = 0; col < GameState.COLS; col++) {
+				if ((mask & (1 << col)) != 0) {
+					int bitmapId;
+					if (high) {
+						bitmapId = (in[inPosition - 1] >> 4) & 0x0f;
+					} else {
+						bitmapId = readByte() & 0x0f;
+					}
+					wall.setBrick(row, col, bitmapId);
+					high = !high;
+				}
+			}
+		}
+		return wall;
+	}
+
+	/**
+	 * Writes the changes of the last docking of the Wall
+	 * */
+	private void writeWallDelta(Wall wall) {
+		writeVarInt(wall.getVersion());
+		writeByte(wall.getLockedBitmapId());
+		writeVarInt(wall.getLockedCellCount());
+		for (int i = 0; i < wall.getLockedCellCount(); i++) {
+			writeByte(wall.getLockedCell(i));
+		}
+		writeVarInt(wall.getClearedRowCount());
+		for (int i = 0; i < wall.getClearedRowCount(); i++) {
+			writeByte(wall.getClearedRow(i));
+		}
+	}
+
+	/**
+	 * Reads the changes of a docking. Every cell and row is checked, the Wall applies them without further checks
+	 * */
+	private WallDelta readWallDelta() {
+		int version = readVarInt();
+		int bitmapId = readInRange(1, SHAPE_TYPES.length, "bitmap id");
+		int[] lockedCells = new int[readCount(ShapeType.MODEL_SIZE * ShapeType.MODEL_SIZE)];
+		for (int i = 0; i < lockedCells.length; i++) {
+			lockedCells[i] = readInRange(0, GameState.ROWS * GameState.COLS - 1, "cell");
+		}
+		int[] clearedRows = new int[readCount(GameState.ROWS)];
+		for (int i = 0; i < clearedRows.length; i++) {
+			clearedRows[i] = readInRange(0, GameState.ROWS - 1, "row");
+		}
+		return new WallDelta(version, bitmapId, lockedCells, clearedRows);
+	}
+
+	private void writeInputBatch(InputBatch batch) {
+		writeVarInt(batch.getPlayerNo());
+		writeVarInt(batch.getFirstTick());
+		writeVarInt(batch.getCount());
+		for (int i = 0; i < batch.getCount(); i++) {
+			writeByte(batch.getInput(i));
+		}
+	}
+
+	/**
+	 * Reads the inputs of a player. A batch that does not fit into an InputBuffer could never be stored, it is rejected
+	 * before its array is allocated
+	 * */
+	private InputBatch readInputBatch() {
+		int playerNo = readVarInt();
+		int firstTick = readVarInt();
+		byte[] inputs = new byte[readCount(InputBuffer.CAPACITY)];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = (byte) readByte();
+		}
+		return new InputBatch(playerNo, firstTick, inputs);
+	}
+
+	/**
+	 * Writes a string of ascii chars, like a bluetooth address, with one byte per char
+	 * */
+	private void writeString(String s) {
+		if (s.length() > MAX_PID_LENGTH) {
+			throw new RuntimeException("Player Id too long: " + s);
+		}
+		writeByte(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c > 0x7f) {
+				throw new RuntimeException("Player Id is not ascii: " + s);
+			}
+			writeByte(c);
+		}
+	}
+
+	private String readString() {
+		int length = readByte();
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) readByte();
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Writes an unsigned int with 7 bits per byte, the highest bit marks that another byte follows
+	 * */
+	private void writeVarInt(int value) {
+		while ((value & ~0x7f) != 0) {
+			writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		writeByte(value);
+	}
+
+	private int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new RuntimeException("Malformed varint");
+	}
+
+	/**
+	 * Maps signed ints onto unsigned ones, so small negative values stay short as varint
+	 * */
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[position++] = (byte) value;
+	}
+
+	/**
+	 * Reads the number of elements that follow, one byte at least each. Checked before an array is allocated for them
+	 * 
+	 * @param max
+	 *            largest number that makes sense for the elements
+	 * @return number of elements
+	 * */
+	private int readCount(int max) {
+		int count = readVarInt();
+		if (count < 0 || count > max || count > inEnd - inPosition) {
+			throw new RuntimeException("Count " + count + " does not fit, at most " + Math.min(max, inEnd - inPosition));
+		}
+		return count;
+	}
+
+	private int readInRange(int min, int max, String name) {
+		int value = readByte();
+		if (value < min || value > max) {
+			throw new RuntimeException("Invalid " + name + ": " + value);
+		}
+		return value;
+	}
+
+	private int readByte() {
+		if (inPosition >= inEnd) {
+			throw new RuntimeException("Frame ends too early");
+		}
+		return in[inPosition++] & 0xff;
+	}
+
+	private int readFixedInt() {
+		if (inPosition + BYTESOFINT > inEnd) {
+			throw new RuntimeException("Frame ends too early");
+		}
+		int value = IntegerConverter.bytearrayToInt(in, inPosition);
+		inPosition += BYTESOFINT;
+		return value;
+	}
+
+	private void writeFixedInt(int index, int value) {
+		ensureCapacity(index + BYTESOFINT - position);
+		IntegerConverter.intToBytearray(value, buffer, index);
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (position + bytes > buffer.length) {
+			byte[] bigger = new byte[Math.max(buffer.length * 2, position + bytes)];
+			System.arraycopy(buffer, 0, bigger, 0, position);
+			buffer = bigger;
 		}
 	}
 }
@@ -0,0 +1,97 @@
+package de.medieninf.mobcomp.multris.network.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothServerSocket;
+import android.bluetooth.BluetoothSocket;
+
+/**
+ * @author marcel bechtold
+ * @author tina schedlbauer
+ * 
+ *         Transport over Bluetooth RFCOMM. Addresses are the MAC addresses of the devices.
+ * */
+public class BluetoothTransport implements Transport {
+
+	private final BluetoothAdapter bluetoothAdapter;
+	private final String name; // name for the SDP record of the server socket
+	private final UUID uuid;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param bluetoothAdapter
+	 *            adapter of this device
+	 * @param name
+	 *            name for the SDP record when creating the server socket
+	 * @param uuid
+	 *            UUID of the application, the same on every device
+	 * */
+	public BluetoothTransport(BluetoothAdapter bluetoothAdapter, String name, UUID uuid) {
+		this.bluetoothAdapter = bluetoothAdapter;
+		this.name = name;
+		this.uuid = uuid;
+	}
+
+	public String getLocalAddress() {
+		return bluetoothAdapter.getAddress();
+	}
+
+	public TransportServer listen() throws IOException {
+		final BluetoothServerSocket serverSocket = bluetoothAdapter.listenUsingRfcommWithServiceRecord(name, uuid);
+		return new TransportServer() {
+			public TransportConnection accept() throws IOException {
+				return new Connection(serverSocket.accept());
+			}
+
+			public void close() throws IOException {
+				serverSocket.close();
+			}
+		};
+	}
+
+	public TransportConnection open(String address) throws IOException {
+		return new Connection(bluetoothAdapter.getRemoteDevice(address).createRfcommSocketToServiceRecord(uuid));
+	}
+
+	/**
+	 * Connection over a BluetoothSocket
+	 * */
+	private class Connection implements TransportConnection {
+		private final BluetoothSocket socket;
+
+		public Connection(BluetoothSocket socket) {
+			this.socket = socket;
+		}
+
+		public void connect() throws IOException {
+			// Always cancel discovery because it will slow down a connection
+			bluetoothAdapter.cancelDiscovery();
+			socket.connect();
+		}
+
+		public InputStream getInputStream() throws IOException {
+			return socket.getInputStream();
+		}
+
+		public OutputStream getOutputStream() throws IOException {
+			return socket.getOutputStream();
+		}
+
+		public String getRemoteAddress() {
+			return socket.getRemoteDevice().getAddress();
+		}
+
+		public String getRemoteName() {
+			return socket.getRemoteDevice().getName();
+		}
+
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+}
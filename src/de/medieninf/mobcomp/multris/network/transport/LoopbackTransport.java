@@ -0,0 +1,313 @@
+package de.medieninf.mobcomp.multris.network.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Transport within one process. Servers register their local address in a registry shared by the whole
+ *         process, a connection is a pair of in-memory pipes. Meant for tests and benchmarks that run all players in a
+ *         single JVM, without any network stack in between.
+ * */
+public class LoopbackTransport implements Transport {
+
+	public static final int DEFAULT_PIPE_CAPACITY = 64 * 1024;
+
+	private static final HashMap<String, Server> servers = new HashMap<String, Server>(); // address -> listening server
+	private static final TransportConnection CLOSED = new Connection(null, null, null); // ends a blocked accept()
+
+	private final String localAddress;
+	private final int pipeCapacity;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param localAddress
+	 *            address other devices know this device by, must be unique within the process
+	 * */
+	public LoopbackTransport(String localAddress) {
+		this(localAddress, DEFAULT_PIPE_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param localAddress
+	 *            address other devices know this device by, must be unique within the process
+	 * @param pipeCapacity
+	 *            number of bytes a pipe holds before the writer has to wait
+	 * */
+	public LoopbackTransport(String localAddress, int pipeCapacity) {
+		this.localAddress = localAddress;
+		this.pipeCapacity = pipeCapacity;
+	}
+
+	public String getLocalAddress() {
+		return localAddress;
+	}
+
+	public TransportServer listen() throws IOException {
+		synchronized (servers) {
+			if (servers.containsKey(localAddress)) {
+				throw new IOException("Address already in use: " + localAddress);
+			}
+			Server server = new Server(localAddress);
+			servers.put(localAddress, server);
+			return server;
+		}
+	}
+
+	public TransportConnection open(final String address) throws IOException {
+		return new TransportConnection() {
+			private Connection connection;
+			private boolean closed;
+
+			public synchronized void connect() throws IOException {
+				if (closed) {
+					throw new IOException("Connection closed");
+				}
+				Server server;
+				synchronized (servers) {
+					server = servers.get(address);
+				}
+				if (server == null) {
+					throw new IOException("Connection refused: " + address);
+				}
+				Pipe toServer = new Pipe(pipeCapacity);
+				Pipe toClient = new Pipe(pipeCapacity);
+				connection = new Connection(address, toClient, toServer);
+				server.offer(new Connection(localAddress, toServer, toClient));
+			}
+
+			public InputStream getInputStream() throws IOException {
+				return established().getInputStream();
+			}
+
+			public OutputStream getOutputStream() throws IOException {
+				return established().getOutputStream();
+			}
+
+			public String getRemoteAddress() {
+				return address;
+			}
+
+			public String getRemoteName() {
+				return address;
+			}
+
+			public synchronized void close() throws IOException {
+				closed = true;
+				if (connection != null) {
+					connection.close();
+				}
+			}
+
+			private synchronized Connection established() throws IOException {
+				if (connection == null) {
+					throw new IOException("Not connected");
+				}
+				return connection;
+			}
+		};
+	}
+
+	/**
+	 * Server that hands out the connections opened to its address
+	 * */
+	private static class Server implements TransportServer {
+		private final String address;
+		private final LinkedBlockingQueue<TransportConnection> pending = new LinkedBlockingQueue<TransportConnection>();
+		private volatile boolean closed;
+
+		public Server(String address) {
+			this.address = address;
+		}
+
+		public void offer(TransportConnection connection) throws IOException {
+			if (closed) {
+				throw new IOException("Connection refused: " + address);
+			}
+			pending.add(connection);
+		}
+
+		public TransportConnection accept() throws IOException {
+			TransportConnection connection;
+			try {
+				connection = pending.take();
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted");
+			}
+			if (connection == CLOSED) {
+				pending.add(CLOSED); // for other threads waiting in accept()
+				throw new IOException("Server closed");
+			}
+			return connection;
+		}
+
+		public void close() {
+			synchronized (servers) {
+				if (servers.get(address) == this) {
+					servers.remove(address);
+				}
+			}
+			closed = true;
+			pending.add(CLOSED);
+		}
+	}
+
+	/**
+	 * One end of an established connection
+	 * */
+	private static class Connection implements TransportConnection {
+		private final String remoteAddress;
+		private final Pipe in;
+		private final Pipe out;
+
+		public Connection(String remoteAddress, Pipe in, Pipe out) {
+			this.remoteAddress = remoteAddress;
+			this.in = in;
+			this.out = out;
+		}
+
+		public void connect() {
+			// established when created
+		}
+
+		public InputStream getInputStream() {
+			return in.getInputStream();
+		}
+
+		public OutputStream getOutputStream() {
+			return out.getOutputStream();
+		}
+
+		public String getRemoteAddress() {
+			return remoteAddress;
+		}
+
+		public String getRemoteName() {
+			return remoteAddress;
+		}
+
+		public void close() {
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Bounded ring buffer of bytes between two threads. Unlike PipedInputStream it does not care which threads read
+	 * and write. Once closed, reads return what is left and then the end of the stream, writes fail.
+	 * */
+	private static class Pipe {
+		private final byte[] buffer;
+		private int head; // next byte to read
+		private int count;
+		private boolean closed;
+
+		public Pipe(int capacity) {
+			buffer = new byte[capacity];
+		}
+
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (count == 0) {
+				if (closed) {
+					return -1;
+				}
+				waitForChange();
+			}
+			int n = Math.min(len, count);
+			int first = Math.min(n, buffer.length - head); // up to the end of the array
+			System.arraycopy(buffer, head, b, off, first);
+			System.arraycopy(buffer, 0, b, off + first, n - first);
+			head = (head + n) % buffer.length;
+			count -= n;
+			notifyAll();
+			return n;
+		}
+
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				while (count == buffer.length && !closed) {
+					waitForChange();
+				}
+				if (closed) {
+					throw new IOException("Pipe closed");
+				}
+				int tail = (head + count) % buffer.length;
+				int n = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+				System.arraycopy(b, off, buffer, tail, n);
+				count += n;
+				off += n;
+				len -= n;
+				notifyAll();
+			}
+		}
+
+		public synchronized void close() {
+			closed = true;
+			notifyAll();
+		}
+
+		private void waitForChange() throws IOException {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted");
+			}
+		}
+
+		public InputStream getInputStream() {
+			return new InputStream() {
+				@Override
+				public int read() throws IOException {
+					byte[] b = new byte[1];
+					return Pipe.this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return Pipe.this.read(b, off, len);
+				}
+
+				@Override
+				public int available() {
+					synchronized (Pipe.this) {
+						return count;
+					}
+				}
+
+				@Override
+				public void close() {
+					Pipe.this.close();
+				}
+			};
+		}
+
+		public OutputStream getOutputStream() {
+			return new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					Pipe.this.write(new byte[] { (byte) b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					Pipe.this.write(b, off, len);
+				}
+
+				@Override
+				public void close() {
+					Pipe.this.close();
+				}
+			};
+		}
+	}
+}
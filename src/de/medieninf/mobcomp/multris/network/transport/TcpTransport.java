@@ -0,0 +1,120 @@
+package de.medieninf.mobcomp.multris.network.transport;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Transport over TCP, for emulators and for running many players on one machine. Addresses to connect to are
+ *         written as host:port. Since the port of an outgoing socket says nothing about the device, both ends send
+ *         their local address right after connecting, before any frame.
+ * */
+public class TcpTransport implements Transport {
+
+	private final String localAddress;
+	private final int port;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param localAddress
+	 *            address other devices know this device by, must be unique within a game. Use host:port for a server,
+	 *            so its address is the one the clients connect to
+	 * @param port
+	 *            port the server listens on, 0 for any free port
+	 * */
+	public TcpTransport(String localAddress, int port) {
+		this.localAddress = localAddress;
+		this.port = port;
+	}
+
+	public String getLocalAddress() {
+		return localAddress;
+	}
+
+	public TransportServer listen() throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(port);
+		return new TransportServer() {
+			public TransportConnection accept() throws IOException {
+				Connection connection = new Connection(serverSocket.accept());
+				connection.exchangeAddresses();
+				return connection;
+			}
+
+			public void close() throws IOException {
+				serverSocket.close();
+			}
+		};
+	}
+
+	public TransportConnection open(String address) throws IOException {
+		int separator = address.lastIndexOf(':');
+		if (separator < 0) {
+			throw new IOException("Address is not host:port: " + address);
+		}
+		int remotePort;
+		try {
+			remotePort = Integer.parseInt(address.substring(separator + 1));
+		} catch (NumberFormatException e) {
+			throw new IOException("Address is not host:port: " + address);
+		}
+		Connection connection = new Connection(new Socket());
+		connection.remoteEndpoint = new InetSocketAddress(address.substring(0, separator), remotePort);
+		return connection;
+	}
+
+	/**
+	 * Connection over a TCP socket
+	 * */
+	private class Connection implements TransportConnection {
+		private final Socket socket;
+		private InetSocketAddress remoteEndpoint; // only set for outgoing connections
+		private String remoteAddress;
+
+		public Connection(Socket socket) {
+			this.socket = socket;
+		}
+
+		public void connect() throws IOException {
+			socket.connect(remoteEndpoint);
+			exchangeAddresses();
+		}
+
+		/**
+		 * Sends the local address and reads the one of the remote device. DataInputStream does not read ahead, so
+		 * the stream starts with the first frame afterwards.
+		 * */
+		private void exchangeAddresses() throws IOException {
+			socket.setTcpNoDelay(true); // frames are small and should not wait for each other
+			new DataOutputStream(socket.getOutputStream()).writeUTF(localAddress);
+			remoteAddress = new DataInputStream(socket.getInputStream()).readUTF();
+		}
+
+		public InputStream getInputStream() throws IOException {
+			return socket.getInputStream();
+		}
+
+		public OutputStream getOutputStream() throws IOException {
+			return socket.getOutputStream();
+		}
+
+		public String getRemoteAddress() {
+			return remoteAddress;
+		}
+
+		public String getRemoteName() {
+			return remoteAddress;
+		}
+
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package de.medieninf.mobcomp.multris.network.transport;
+
+import java.io.IOException;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         A way to connect devices. The framing and the messages sit on top of the streams of a TransportConnection,
+ *         so they do not care if the bytes go over Bluetooth, TCP or stay within the process.
+ * 
+ *         Devices are identified by addresses. The remote address of a connection is always the local address of the
+ *         device on the other end, so both sides agree on who sent a message.
+ * */
+public interface Transport {
+
+	/**
+	 * Getter for the address other devices know this device by
+	 * 
+	 * @return local address
+	 * */
+	String getLocalAddress();
+
+	/**
+	 * Starts listening for incoming connections. Used by the server
+	 * 
+	 * @return server that accepts the connections
+	 * @throws IOException
+	 *             if the transport cannot listen
+	 * */
+	TransportServer listen() throws IOException;
+
+	/**
+	 * Creates a connection to a remote device. The connection is not established before
+	 * TransportConnection.connect() is called, so it can be cancelled while connecting.
+	 * 
+	 * @param address
+	 *            address of the remote device
+	 * @return unconnected connection
+	 * @throws IOException
+	 *             if the address is not valid for this transport
+	 * */
+	TransportConnection open(String address) throws IOException;
+}
@@ -0,0 +1,47 @@
+package de.medieninf.mobcomp.multris.network.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         A connection to one remote device. Like a socket
+ * */
+public interface TransportConnection {
+
+	/**
+	 * Establishes the connection. Blocks until it is established, connections returned by TransportServer.accept()
+	 * are established already.
+	 * 
+	 * @throws IOException
+	 *             if the remote device cannot be reached or the connection has been closed
+	 * */
+	void connect() throws IOException;
+
+	/**
+	 * @return stream of the bytes sent by the remote device
+	 * */
+	InputStream getInputStream() throws IOException;
+
+	/**
+	 * @return stream to the remote device
+	 * */
+	OutputStream getOutputStream() throws IOException;
+
+	/**
+	 * @return local address of the remote device, valid once the connection is established
+	 * */
+	String getRemoteAddress();
+
+	/**
+	 * @return name of the remote device that can be shown to the user
+	 * */
+	String getRemoteName();
+
+	/**
+	 * Closes the connection. Blocked calls on it throw an IOException
+	 * */
+	void close() throws IOException;
+}
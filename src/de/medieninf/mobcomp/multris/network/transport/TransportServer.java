@@ -0,0 +1,25 @@
+package de.medieninf.mobcomp.multris.network.transport;
+
+import java.io.IOException;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Accepts incoming connections of a Transport. Like a server socket
+ * */
+public interface TransportServer {
+
+	/**
+	 * Waits for the next incoming connection
+	 * 
+	 * @return established connection
+	 * @throws IOException
+	 *             if the server has been closed or fails
+	 * */
+	TransportConnection accept() throws IOException;
+
+	/**
+	 * Stops listening. A blocked accept() throws an IOException
+	 * */
+	void close() throws IOException;
+}
@@ -0,0 +1,173 @@
+package de.medieninf.mobcomp.multris.view;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+import de.medieninf.mobcomp.multris.R;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         All bricks in one bitmap, side by side and indexed by bitmap id. A brick is drawn with its source Rect out of
+ *         the atlas.
+ * 
+ *         Bricks are only ever drawn onto the background color of the game area, so they are flattened onto it when
+ *         the atlas is built. Without alpha the atlas can be stored as RGB_565, which takes half the memory of
+ *         ARGB_8888. Drawing a flattened brick with a transparent Paint gives the same color as drawing the original
+ *         one.
+ * 
+ *         Building the atlas means decoding and scaling all brick PNGs. The result is saved as a PNG in the cache
+ *         directory, one file per brick size and background, so later launches only decode that file.
+ * */
+public class BrickAtlas {
+	private static final String TAG = BrickAtlas.class.getSimpleName();
+
+	private static final int VERSION = 1; // to be increased when the brick PNGs change
+	private static final int[] BRICKS = { R.drawable.brick_transparent, R.drawable.brick_o, R.drawable.brick_t,
+			R.drawable.brick_i, R.drawable.brick_j, R.drawable.brick_l, R.drawable.brick_s, R.drawable.brick_z }; // by bitmap id
+
+	private Bitmap atlas;
+	private int bricksize;
+	private Rect[] sources;
+	private Rect destination = new Rect(); // reused by draw(), only used by the drawing thread
+
+	/**
+	 * Constructor
+	 * 
+	 * @param atlas
+	 *            bitmap with all bricks in one row
+	 * @param bricksize
+	 *            edge length of a brick
+	 * */
+	public BrickAtlas(Bitmap atlas, int bricksize) {
+		this.atlas = atlas;
+		this.bricksize = bricksize;
+		sources = new Rect[BRICKS.length];
+		for (int id = 0; id < BRICKS.length; id++) {
+			sources[id] = new Rect(id * bricksize, 0, (id + 1) * bricksize, bricksize);
+		}
+	}
+
+	/**
+	 * Loads the atlas of the given brick size from the cache directory or builds and caches it if there is none yet.
+	 * Decodes bitmaps, so it should not be called on the main thread
+	 * 
+	 * @param resources
+	 *            Resources with the brick PNGs
+	 * @param cacheDir
+	 *            directory the atlas is cached in
+	 * @param bricksize
+	 *            edge length of a brick
+	 * @param background
+	 *            color of the game area the bricks are flattened onto
+	 * @return the atlas
+	 * */
+	public static BrickAtlas load(Resources resources, File cacheDir, int bricksize, int background) {
+		File file = new File(cacheDir, "bricks_v" + VERSION + "_" + bricksize + "_" + Integer.toHexString(background) + ".png");
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		Bitmap atlas = null;
+		if (file.exists()) {
+			atlas = BitmapFactory.decodeFile(file.getPath(), options);
+			if (atlas != null && (atlas.getWidth() != bricksize * BRICKS.length || atlas.getHeight() != bricksize)) {
+				atlas.recycle();
+				atlas = null;
+			}
+			if (atlas == null) {
+				Log.w(TAG, "cached atlas " + file + " is unusable, building it again");
+			}
+		}
+		if (atlas == null) {
+			atlas = build(resources, bricksize, background);
+			save(atlas, file);
+		}
+		return new BrickAtlas(atlas, bricksize);
+	}
+
+	/**
+	 * Decodes the brick PNGs, scales them to bricksize and draws them into a new atlas
+	 * */
+	private static Bitmap build(Resources resources, int bricksize, int background) {
+		Bitmap atlas = Bitmap.createBitmap(bricksize * BRICKS.length, bricksize, Bitmap.Config.RGB_565);
+		Canvas canvas = new Canvas(atlas);
+		canvas.drawColor(background);
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inScaled = false; // scaled to bricksize anyway, no need for a density scaled copy in between
+		for (int id = 0; id < BRICKS.length; id++) {
+			Bitmap brick = BitmapFactory.decodeResource(resources, BRICKS[id], options);
+			if (brick == null) {
+				throw new RuntimeException("brick " + id + " could not be decoded");
+			}
+			Rect source = new Rect(0, 0, brick.getWidth(), brick.getHeight());
+			Rect target = new Rect(id * bricksize, 0, (id + 1) * bricksize, bricksize);
+			canvas.drawBitmap(brick, source, target, null);
+			brick.recycle();
+		}
+		return atlas;
+	}
+
+	/**
+	 * Writes the atlas to file. The atlas can be used even if that fails, it is only built again on the next launch
+	 * */
+	private static void save(Bitmap atlas, File file) {
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tmp);
+			if (atlas.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+				out.close();
+				out = null;
+				if (!tmp.renameTo(file)) {
+					Log.w(TAG, "could not rename " + tmp + " to " + file);
+				}
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "could not cache the atlas in " + file, e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// nothing left to do
+				}
+			}
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Draws a brick onto the Canvas
+	 * 
+	 * @param canvas
+	 *            Canvas the brick is drawn on
+	 * @param id
+	 *            bitmap id of the brick
+	 * @param x
+	 *            left edge of the brick
+	 * @param y
+	 *            top edge of the brick
+	 * @param paint
+	 *            Paint to draw with, may be null
+	 * */
+	public void draw(Canvas canvas, int id, int x, int y, Paint paint) {
+		destination.set(x, y, x + bricksize, y + bricksize);
+		canvas.drawBitmap(atlas, sources[id], destination, paint);
+	}
+
+	/**
+	 * Getter for the edge length of a brick
+	 * 
+	 * @return bricksize
+	 * */
+	public int getBricksize() {
+		return bricksize;
+	}
+}
@@ -0,0 +1,76 @@
+package de.medieninf.mobcomp.multris.view;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Paces the frames of the GameThread with System.nanoTime(). Every frame has a deadline on a fixed grid of
+ *         frame periods. After a frame has been posted, the thread waits until the deadline of the next frame, so the
+ *         frames do not drift however long each of them took.
+ * 
+ *         A frame that is posted after its deadline is late. If it took so long that the deadlines of following
+ *         frames have passed as well, those frames are missed: they are skipped and the grid goes on with the next
+ *         deadline that is still ahead.
+ * */
+public class FrameScheduler {
+
+	private final long period; // ns
+	private long deadline; // when the current frame has to be posted
+	private long frames;
+	private long lateFrames;
+	private long missedFrames;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param period
+	 *            length of a frame in ns
+	 * */
+	public FrameScheduler(long period) {
+		this.period = period;
+	}
+
+	/**
+	 * Starts the grid. The first frame is due one period from now
+	 * */
+	public void start() {
+		deadline = System.nanoTime() + period;
+	}
+
+	/**
+	 * Called after a frame has been posted. Counts it as late if it has missed its deadline and waits for the
+	 * deadline of the next frame
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 * */
+	public void awaitNextFrame() throws InterruptedException {
+		frames++;
+		long now = System.nanoTime();
+		if (now > deadline) {
+			lateFrames++;
+			long skipped = (now - deadline) / period; // deadlines that have passed during this frame
+			missedFrames += skipped;
+			deadline += skipped * period;
+		}
+		long wait = deadline - now;
+		deadline += period;
+		if (wait > 0) {
+			Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+		}
+	}
+
+	/** Getter for the number of frames posted */
+	public long getFrames() {
+		return frames;
+	}
+
+	/** Getter for the number of frames posted after their deadline */
+	public long getLateFrames() {
+		return lateFrames;
+	}
+
+	/** Getter for the number of frames skipped because an earlier frame took too long */
+	public long getMissedFrames() {
+		return missedFrames;
+	}
+}
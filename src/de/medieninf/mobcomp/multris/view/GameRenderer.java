@@ -0,0 +1,82 @@
+package de.medieninf.mobcomp.multris.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import de.medieninf.mobcomp.multris.game.data.Shape;
+import de.medieninf.mobcomp.multris.game.data.Wall;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         GameRenderer draws the Wall and the Shapes of a GameState onto a Canvas. It keeps all Android drawing code
+ *         out of the game logic. The Wall is taken from a WallLayer, the Shapes are drawn brick by brick every frame.
+ * */
+public class GameRenderer {
+
+	private BrickAtlas atlas;
+	private int bricksize;
+	private int top;
+	private int left;
+	private WallLayer wallLayer;
+	private Paint shapePaint;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param atlas
+	 *            bricks, indexed by bitmap id
+	 * @param top
+	 *            top edge of the game area
+	 * @param left
+	 *            left edge of the game area
+	 * @param resources
+	 *            colors and Paints shared with the rest of the frame
+	 * */
+	public GameRenderer(BrickAtlas atlas, int top, int left, RenderResources resources) {
+		this.atlas = atlas;
+		this.bricksize = atlas.getBricksize();
+		this.top = top;
+		this.left = left;
+		this.wallLayer = new WallLayer(atlas);
+		this.shapePaint = resources.getShapePaint();
+	}
+
+	/**
+	 * Draws the Wall onto the Canvas. Only the rows that have changed since the last frame are drawn again
+	 * 
+	 * @param canvas
+	 *            Canvas the Wall has to be drawn on
+	 * @param wall
+	 *            Wall that has to be drawn
+	 * */
+	public void drawWall(Canvas canvas, Wall wall) {
+		wallLayer.draw(canvas, wall, left, top);
+	}
+
+	/**
+	 * Draws the Shape onto the Canvas
+	 * 
+	 * @param canvas
+	 *            Canvas the Shape has to be drawn on
+	 * @param shape
+	 *            Shape that has to be drawn
+	 * @param myShape
+	 *            true if it is the Shape of this player, other Shapes are drawn transparent
+	 * */
+	public void drawShape(Canvas canvas, Shape shape, boolean myShape) {
+		int height = shape.getHeight();
+		int width = shape.getWidth();
+		int bitmapId = shape.getBitmapId();
+		for (int row = 0; row < height; row++) {
+			int rowMask = shape.getRowMask(row);
+			for (int col = 0; col < width; col++) {
+				if ((rowMask & (1 << col)) != 0) {
+					int x = left + (shape.getPosX() + col) * bricksize;
+					int y = top + (shape.getPosY() + row) * bricksize;
+					atlas.draw(canvas, bitmapId, x, y, myShape ? null : shapePaint);
+				}
+			}
+		}
+	}
+}
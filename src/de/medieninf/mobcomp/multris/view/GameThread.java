@@ -0,0 +1,138 @@
+package de.medieninf.mobcomp.multris.view;
+
+import de.medieninf.mobcomp.multris.game.GameState;
+import android.view.SurfaceHolder;
+import android.graphics.Canvas;
+import android.util.Log;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         This thread is running during a game. It handles gameprogress and its rendering
+ * 
+ *         The game progresses with a fixed timestep: the time that has passed is collected in an accumulator and
+ *         the GameState does one tick for every TICK_PERIOD in it, no matter how long rendering took. A slow frame is
+ *         made up for by several ticks before the next frame, up to MAX_TICKS_PER_FRAME. Whatever is left above that
+ *         (e.g. after the thread has not run for a while) is dropped instead of being caught up with in a burst.
+ * 
+ *         A frame is posted as soon as it is drawn. The wait for the next frame happens afterwards, outside of the
+ *         lock of the SurfaceHolder, and is paced by a FrameScheduler.
+ * */
+public class GameThread extends Thread {
+	private static final String TAG = GameThread.class.getSimpleName();
+
+	public final static int FPS = GameState.TICKS_PER_SECOND; // FPS
+	private final static long FRAME_PERIOD = 1000000000L / FPS; // period in ns
+	private final static long TICK_PERIOD = 1000000000L / GameState.TICKS_PER_SECOND; // simulated time of a tick in ns
+	private final static int MAX_TICKS_PER_FRAME = 5; // frame skip budget: ticks done without rendering in between
+
+	private SurfaceHolder surfaceHolder;
+	private TetrisView tetrisView;
+	private volatile boolean running; // If game is running
+
+	private FrameScheduler frameScheduler = new FrameScheduler(FRAME_PERIOD);
+	private long ticks; // ticks done
+	private long droppedTicks; // ticks that have been dropped because of the frame skip budget
+
+	public GameThread(TetrisView tetrisView) {
+		super();
+		this.surfaceHolder = tetrisView.getHolder();
+		this.tetrisView = tetrisView;
+	}
+
+	/** Getter for the current Thread state */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Setter for the current Thread state
+	 * 
+	 * @param running
+	 */
+	public void setRunning(boolean running) {
+		this.running = running;
+	}
+
+	@Override
+	public void run() {
+		Canvas canvas;
+		Log.d(TAG, "Starting game loop");
+
+		long lastTime = System.nanoTime();
+		long accumulator = TICK_PERIOD; // the first frame shows the first tick
+		frameScheduler.start();
+
+		while (running) {
+			long now = System.nanoTime();
+			accumulator += now - lastTime;
+			lastTime = now;
+			// / Progress
+			accumulator = simulate(accumulator);
+			canvas = null;
+			// try locking the canvas for exclusive pixel edit ing on the
+			// surface
+			try {
+				canvas = this.surfaceHolder.lockCanvas();
+				if (canvas != null) { // null while there is no surface
+					synchronized (surfaceHolder) {
+						// / view
+						this.tetrisView.render(canvas);
+					}
+				}
+			} finally {
+				// in case of an exception the surface is not left in
+				// an inconsistent state
+				if (canvas != null) {
+					surfaceHolder.unlockCanvasAndPost(canvas); // present the frame right away
+				}
+			}
+			try {
+				frameScheduler.awaitNextFrame(); // nothing is locked while waiting
+			} catch (InterruptedException e) {
+				throw new RuntimeException("Sleeping Thread interrupted", e);
+			}
+		}
+		Log.d(TAG, "Game loop stopped: " + ticks + " ticks, " + frameScheduler.getFrames() + " frames ("
+				+ frameScheduler.getLateFrames() + " late, " + frameScheduler.getMissedFrames() + " missed), "
+				+ droppedTicks + " ticks dropped");
+	}
+
+	/**
+	 * Does a tick for every TICK_PERIOD in the accumulator, but no more than MAX_TICKS_PER_FRAME
+	 * 
+	 * @param accumulator
+	 *            time in ns that has not been simulated yet
+	 * @return time that is left for the next frame, less than TICK_PERIOD
+	 * */
+	private long simulate(long accumulator) {
+		int ticksThisFrame = 0;
+		while (running && accumulator >= TICK_PERIOD && ticksThisFrame < MAX_TICKS_PER_FRAME) {
+			this.tetrisView.tick();
+			accumulator -= TICK_PERIOD;
+			ticksThisFrame++;
+		}
+		ticks += ticksThisFrame;
+		if (accumulator >= TICK_PERIOD) { // over budget, the game time is not caught up any further
+			droppedTicks += accumulator / TICK_PERIOD;
+			accumulator %= TICK_PERIOD;
+		}
+		return accumulator;
+	}
+
+	/** Getter for the number of ticks done */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/** Getter for the FrameScheduler, which counts the frames and the late and missed ones */
+	public FrameScheduler getFrameScheduler() {
+		return frameScheduler;
+	}
+
+	/** Getter for the number of ticks dropped because the frame skip budget was used up */
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
+}
@@ -0,0 +1,113 @@
+package de.medieninf.mobcomp.multris.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * @author marcel bechtold
+ * 
+ *         Everything the GameThread needs to draw a frame besides the bitmaps: the Paints, the Rect of the game area and
+ *         the text of the score. They are created once, so drawing a frame does not allocate any object. The score text
+ *         is kept in a char array and only written again when the points have changed.
+ * */
+public class RenderResources {
+
+	private static final char[] SCORE_PREFIX = "Score: ".toCharArray();
+	private static final int MAX_DIGITS = 10; // Integer.MAX_VALUE
+
+	private int background;
+	private Rect field;
+	private Paint fieldPaint;
+	private Paint textPaint;
+	private Paint shapePaint; // other players' Shapes
+
+	private char[] scoreText = new char[SCORE_PREFIX.length + MAX_DIGITS];
+	private int scoreLength;
+	private int cachedPoints = -1;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param background
+	 *            color of the screen and the game area
+	 * @param textColor
+	 *            color of the score
+	 * @param field
+	 *            game area
+	 * */
+	public RenderResources(int background, int textColor, Rect field) {
+		this.background = background;
+		this.field = field;
+		fieldPaint = new Paint();
+		fieldPaint.setColor(background);
+		textPaint = new Paint();
+		textPaint.setTextAlign(Paint.Align.LEFT);
+		textPaint.setColor(textColor);
+		textPaint.setTextSize(20);
+		shapePaint = new Paint();
+		shapePaint.setAlpha(80);
+		System.arraycopy(SCORE_PREFIX, 0, scoreText, 0, SCORE_PREFIX.length);
+	}
+
+	/**
+	 * Clears the screen and the game area
+	 * 
+	 * @param canvas
+	 *            Canvas to be cleared
+	 * */
+	public void drawBackground(Canvas canvas) {
+		canvas.drawColor(background);
+		canvas.drawRect(field, fieldPaint);
+	}
+
+	/**
+	 * Draws the score above the game area
+	 * 
+	 * @param canvas
+	 *            Canvas the score is drawn on
+	 * @param points
+	 *            current points, not negative
+	 * */
+	public void drawScore(Canvas canvas, int points) {
+		if (points != cachedPoints) {
+			updateScoreText(points);
+		}
+		canvas.drawText(scoreText, 0, scoreLength, 0, field.top + textPaint.getTextSize(), textPaint);
+	}
+
+	/**
+	 * Writes the digits of points behind the prefix of scoreText
+	 * */
+	private void updateScoreText(int points) {
+		int digits = 1;
+		for (int p = points / 10; p > 0; p /= 10) {
+			digits++;
+		}
+		scoreLength = SCORE_PREFIX.length + digits;
+		int p = points;
+		for (int i = scoreLength - 1; i >= SCORE_PREFIX.length; i--) {
+			scoreText[i] = (char) ('0' + p % 10);
+			p /= 10;
+		}
+		cachedPoints = points;
+	}
+
+	/**
+	 * Getter for the background color
+	 * 
+	 * @return color of the game area
+	 * */
+	public int getBackground() {
+		return background;
+	}
+
+	/**
+	 * Getter for the Paint of the other players' Shapes
+	 * 
+	 * @return transparent Paint
+	 * */
+	public Paint getShapePaint() {
+		return shapePaint;
+	}
+}
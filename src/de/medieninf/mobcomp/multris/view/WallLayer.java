@@ -0,0 +1,86 @@
+package de.medieninf.mobcomp.multris.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import de.medieninf.mobcomp.multris.game.GameState;
+import de.medieninf.mobcomp.multris.game.data.Wall;
+
+/**
+ * @author tina schedlbauer
+ * @author marcel bechtold
+ * 
+ *         Offscreen image of the Wall. The Wall only changes when a Shape docks or rows are deleted, so its bricks are
+ *         drawn into a bitmap once and only the rows the Wall reports as changed are drawn again. A frame then needs a
+ *         single drawBitmap() for the whole Wall.
+ * */
+public class WallLayer {
+
+	private static final int ALL_ROWS = (1 << GameState.ROWS) - 1;
+
+	private BrickAtlas atlas;
+	private int bricksize;
+	private Bitmap layer;
+	private Canvas layerCanvas;
+	private Wall cachedWall; // Wall the layer shows
+	private long redrawnRows;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param atlas
+	 *            bricks, flattened onto the background
+	 * */
+	public WallLayer(BrickAtlas atlas) {
+		this.atlas = atlas;
+		this.bricksize = atlas.getBricksize();
+		layer = Bitmap.createBitmap(bricksize * GameState.COLS, bricksize * GameState.ROWS, Bitmap.Config.RGB_565);
+		layerCanvas = new Canvas(layer);
+	}
+
+	/**
+	 * Brings the layer up to date and draws it onto the Canvas
+	 * 
+	 * @param canvas
+	 *            Canvas the Wall has to be drawn on
+	 * @param wall
+	 *            Wall that has to be drawn
+	 * @param left
+	 *            left edge of the game area
+	 * @param top
+	 *            top edge of the game area
+	 * */
+	public void draw(Canvas canvas, Wall wall, int left, int top) {
+		int dirtyRows = wall.takeDirtyRows();
+		if (wall != cachedWall) { // new game or the whole Wall has been received
+			cachedWall = wall;
+			dirtyRows = ALL_ROWS;
+		}
+		for (int row = 0; dirtyRows != 0; row++, dirtyRows >>>= 1) {
+			if ((dirtyRows & 1) != 0) {
+				drawRow(wall, row);
+			}
+		}
+		canvas.drawBitmap(layer, left, top, null);
+	}
+
+	/**
+	 * Draws one row of the Wall into the layer. The empty bricks are opaque as well, so they overwrite whatever was
+	 * in the row before
+	 * */
+	private void drawRow(Wall wall, int row) {
+		int y = row * bricksize;
+		for (int col = 0; col < GameState.COLS; col++) {
+			atlas.draw(layerCanvas, wall.getBrick(row, col), col * bricksize, y, null);
+		}
+		redrawnRows++;
+	}
+
+	/**
+	 * Getter for the number of rows drawn into the layer so far
+	 * 
+	 * @return redrawn rows
+	 * */
+	public long getRedrawnRows() {
+		return redrawnRows;
+	}
+}